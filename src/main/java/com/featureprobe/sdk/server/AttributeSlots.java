@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.featureprobe.sdk.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dense ids for the attribute names read by the conditions and splits of one repository version, so that a
+ * {@link PreparedUser} can keep its attributes in an array indexed by them. A table is created when a version is
+ * compiled, see {@link com.featureprobe.sdk.server.model.CompileContext#forVersion()}, and is released with that
+ * version, so it only ever holds the names that version reads.
+ */
+public final class AttributeSlots {
+
+    public static final int NO_SLOT = -1;
+
+    private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+
+    private volatile int size;
+
+    /**
+     * @return the slot of an attribute name, assigning the next free slot to a name seen for the first time, or
+     * {@link #NO_SLOT} for a null name
+     */
+    public int slotOf(String name) {
+        if (name == null) {
+            return NO_SLOT;
+        }
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        synchronized (slots) {
+            slot = slots.get(name);
+            if (slot == null) {
+                slot = size;
+                slots.put(name, slot);
+                size = slot + 1;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * @return the slot of an attribute name, or {@link #NO_SLOT} if no condition or split of the version reads it
+     */
+    int find(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    int size() {
+        return size;
+    }
+
+}
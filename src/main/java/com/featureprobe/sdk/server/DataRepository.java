@@ -18,10 +18,13 @@
 package com.featureprobe.sdk.server;
 
 import com.featureprobe.sdk.server.model.Repository;
+import com.featureprobe.sdk.server.model.RepositoryProblem;
 import com.featureprobe.sdk.server.model.Segment;
 import com.featureprobe.sdk.server.model.Toggle;
 
 import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public interface DataRepository extends Closeable {
@@ -40,4 +43,27 @@ public interface DataRepository extends Closeable {
 
     boolean initialized();
 
+    /**
+     * @return the invalid data found in the current repository version, see {@link Repository#getProblems()}
+     */
+    default List<RepositoryProblem> getProblems() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the current repository version as one immutable snapshot, which the evaluation path reads once per
+     * call. Implementations should publish a new snapshot on refresh and return it with a single read; this default
+     * assembles one from the other getters, which is only consistent if no refresh runs meanwhile. It reuses the
+     * last assembled snapshot while the getters return the same instances, so an implementation whose getters
+     * return new collections on every call must override this method to avoid a new snapshot per evaluation.
+     *
+     * @return the current snapshot, {@link RepositorySnapshot#UNINITIALIZED} before the first refresh
+     */
+    default RepositorySnapshot snapshot() {
+        if (!initialized()) {
+            return RepositorySnapshot.UNINITIALIZED;
+        }
+        return RepositorySnapshot.assemble(this);
+    }
+
 }
@@ -28,9 +28,11 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.slf4j.Logger;
+import org.slf4j.event.Level;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -70,6 +72,8 @@ public class DefaultEventProcessor implements EventProcessor {
     private static final String LOG_SENDER_ERROR = "Unexpected error from event sender";
     private static final String LOG_BUSY_EVENT = "Event processing is busy, some will be dropped";
 
+    private static final RateLimitedLogger busyEventLogger = Loggers.rateLimited(logger, Level.WARN, LOG_BUSY_EVENT);
+
     ThreadFactory threadFactory = new ThreadFactoryBuilder()
             .setDaemon(true)
             .setNameFormat("FeatureProbe-event-handle-%d")
@@ -89,6 +93,20 @@ public class DefaultEventProcessor implements EventProcessor {
         Runnable flusher = this::flush;
         scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
         scheduler.scheduleAtFixedRate(flusher, 0L, 5, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(DefaultEventProcessor::flushRateLimited, Loggers.RATE_LIMIT_INTERVAL_SECONDS,
+                Loggers.RATE_LIMIT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs {@link Loggers#flushRateLimited()} for the scheduler, which would cancel the periodic flush for the rest
+     * of the process if it threw.
+     */
+    private static void flushRateLimited() {
+        try {
+            Loggers.flushRateLimited();
+        } catch (Throwable e) {
+            logger.error("FeatureProbe rate limited log flush error", e);
+        }
     }
 
     @Override
@@ -96,7 +114,18 @@ public class DefaultEventProcessor implements EventProcessor {
         if (!closed.get()) {
             boolean success = eventQueue.offer(new EventAction(EventActionType.EVENT, event));
             if (!success) {
-                logger.warn(LOG_BUSY_EVENT);
+                busyEventLogger.log();
+            }
+        }
+    }
+
+    @Override
+    public void pushAll(Collection<? extends Event> events) {
+        if (!closed.get() && !events.isEmpty()) {
+            boolean success = eventQueue.offer(new EventAction(EventActionType.EVENTS, null,
+                    new ArrayList<>(events)));
+            if (!success) {
+                busyEventLogger.log();
             }
         }
     }
@@ -105,7 +134,7 @@ public class DefaultEventProcessor implements EventProcessor {
     public void flush() {
         if (!closed.get()) {
             if (!eventQueue.offer(new EventAction(EventActionType.FLUSH, null))) {
-                logger.warn(LOG_BUSY_EVENT);
+                busyEventLogger.log();
             }
         }
     }
@@ -128,6 +157,11 @@ public class DefaultEventProcessor implements EventProcessor {
                         case EVENT:
                             processEvent(action.event, eventRepository);
                             break;
+                        case EVENTS:
+                            for (Event event : action.events) {
+                                processEvent(event, eventRepository);
+                            }
+                            break;
                         case FLUSH:
                             processFlush(context, eventRepository);
                             break;
@@ -278,15 +312,23 @@ public class DefaultEventProcessor implements EventProcessor {
 
         private final Event event;
 
+        private final List<Event> events;
+
         public EventAction(EventActionType type, Event event) {
+            this(type, event, null);
+        }
+
+        public EventAction(EventActionType type, Event event, List<Event> events) {
             this.type = type;
             this.event = event;
+            this.events = events;
         }
 
     }
 
     private enum EventActionType {
         EVENT,
+        EVENTS,
         FLUSH,
         SHUTDOWN
     }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server;
+
+import com.featureprobe.sdk.server.model.Toggle;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Results of single toggle evaluations, kept for the same toggle and user. Entries are keyed by the toggle key, the
+ * {@link Toggle#dependencyFingerprint() versions} of the toggle and of the toggles and segments it depends on, and
+ * the user key and attributes, so a repository version that changes any of them stops hitting the entries of the
+ * previous one, which are then evicted by size or age. Toggles that are not {@link Toggle#cacheable() cacheable},
+ * such as those with datetime conditions, are evaluated every time. Concurrent misses on the same entry evaluate the
+ * toggle once, the other callers wait for that result.
+ */
+final class EvaluationCache {
+
+    private final Cache<Key, EvaluationResult> results;
+
+    EvaluationCache(long maximumSize, Duration expireAfterWrite) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats();
+        if (Objects.nonNull(expireAfterWrite)) {
+            builder.expireAfterWrite(expireAfterWrite.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        this.results = builder.build();
+    }
+
+    /**
+     * @param evaluate evaluates the toggle without a default value
+     * @return the cached result, or the result of {@code evaluate}, which is cached
+     */
+    EvaluationResult get(Toggle toggle, FPUser user, Supplier<EvaluationResult> evaluate) {
+        Key key = new Key(toggle, user);
+        try {
+            return results.get(key, () -> {
+                key.freeze();
+                return evaluate.get();
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    CacheStats stats() {
+        return results.stats();
+    }
+
+    private static final class Key {
+
+        private final String toggleKey;
+
+        private final Long toggleVersion;
+
+        private final long dependencyFingerprint;
+
+        private final String userKey;
+
+        /**
+         * The attributes of the user, not copied for a lookup that hits, see {@link #freeze()}.
+         */
+        private Map<String, String> attrs;
+
+        private boolean frozen;
+
+        private final int hash;
+
+        Key(Toggle toggle, FPUser user) {
+            this.toggleKey = toggle.getKey();
+            this.toggleVersion = toggle.getVersion();
+            this.dependencyFingerprint = toggle.dependencyFingerprint();
+            this.userKey = user.getKey();
+            this.attrs = user.getAttrs();
+            this.frozen = user instanceof PreparedUser;
+            this.hash = Objects.hash(toggleKey, toggleVersion, dependencyFingerprint, userKey, attrs);
+        }
+
+        /**
+         * Copies the attributes of a user that may still be modified, called on a miss, when this key is about to be
+         * stored; the copy is equal to the attributes, so the hash does not change.
+         */
+        void freeze() {
+            if (!frozen) {
+                attrs = new HashMap<>(attrs);
+                frozen = true;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                    && dependencyFingerprint == key.dependencyFingerprint
+                    && Objects.equals(toggleKey, key.toggleKey)
+                    && Objects.equals(toggleVersion, key.toggleVersion)
+                    && Objects.equals(userKey, key.userKey)
+                    && Objects.equals(attrs, key.attrs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package com.featureprobe.sdk.server;
 
+import java.util.Objects;
 import java.util.Optional;
 
 public class EvaluationResult {
@@ -31,6 +32,14 @@ public class EvaluationResult {
 
     private String reason;
 
+    private ReasonCode reasonCode;
+
+    private Object firstReasonArgument;
+
+    private Object secondReasonArgument;
+
+    private boolean immutable;
+
     public EvaluationResult(Object value, Optional<Integer> ruleIndex,
                             Optional<Integer> variationIndex, Long version, String reason) {
         this.value = value;
@@ -40,11 +49,38 @@ public class EvaluationResult {
         this.reason = reason;
     }
 
+    /**
+     * Copies a result evaluated without a default value, see {@link EvaluationCache}, as if it had been evaluated
+     * with {@code defaultValue}.
+     */
+    EvaluationResult withDefaultValue(Object defaultValue) {
+        Object value = variationIndex.isPresent() ? this.value : defaultValue;
+        if (defaultValue instanceof Double && value instanceof Integer) {
+            value = Double.valueOf((Integer) value);
+        }
+        EvaluationResult result = new EvaluationResult(value, ruleIndex, variationIndex, version, reason);
+        result.reasonCode = reasonCode;
+        result.firstReasonArgument = firstReasonArgument;
+        result.secondReasonArgument = secondReasonArgument;
+        return result;
+    }
+
+    /**
+     * Copies this result into one whose setters throw {@link UnsupportedOperationException}, for a result that is
+     * built once and shared by many evaluations.
+     */
+    public EvaluationResult immutableCopy() {
+        EvaluationResult result = new EvaluationResult(value, ruleIndex, variationIndex, version, getReason());
+        result.immutable = true;
+        return result;
+    }
+
     public Object getValue() {
         return value;
     }
 
     public void setValue(Object value) {
+        checkMutable();
         this.value = value;
     }
 
@@ -53,6 +89,7 @@ public class EvaluationResult {
     }
 
     public void setRuleIndex(Optional<Integer> ruleIndex) {
+        checkMutable();
         this.ruleIndex = ruleIndex;
     }
 
@@ -61,6 +98,7 @@ public class EvaluationResult {
     }
 
     public void setVariationIndex(Optional<Integer> variationIndex) {
+        checkMutable();
         this.variationIndex = variationIndex;
     }
 
@@ -69,15 +107,38 @@ public class EvaluationResult {
     }
 
     public void setVersion(Long version) {
+        checkMutable();
         this.version = version;
     }
 
     public String getReason() {
+        if (Objects.isNull(reason) && Objects.nonNull(reasonCode)) {
+            reason = reasonCode.format(firstReasonArgument, secondReasonArgument);
+        }
         return reason;
     }
 
     public void setReason(String reason) {
+        checkMutable();
         this.reason = reason;
+        this.reasonCode = null;
+    }
+
+    /**
+     * Sets a reason that is formatted from {@code reasonCode} and its arguments when it is first read.
+     */
+    public void setReason(ReasonCode reasonCode, Object firstReasonArgument, Object secondReasonArgument) {
+        checkMutable();
+        this.reason = null;
+        this.reasonCode = reasonCode;
+        this.firstReasonArgument = firstReasonArgument;
+        this.secondReasonArgument = secondReasonArgument;
+    }
+
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("Shared evaluation results cannot be modified");
+        }
     }
 
 }
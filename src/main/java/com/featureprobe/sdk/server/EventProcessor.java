@@ -17,10 +17,21 @@
 
 package com.featureprobe.sdk.server;
 
+import java.util.Collection;
+
 public interface EventProcessor {
 
     void push(Event event);
 
+    /**
+     * Pushes the events of one evaluation batch, see {@link FeatureProbe#evaluateAll(FPUser)}.
+     */
+    default void pushAll(Collection<? extends Event> events) {
+        for (Event event : events) {
+            push(event);
+        }
+    }
+
     void flush();
 
     void shutdown();
@@ -44,6 +44,14 @@ public final class FPConfig {
 
     final Integer prerequisiteDeep;
 
+    final int regexStepBudget;
+
+    final JsonVariationMode jsonVariationMode;
+
+    final long evaluationCacheSize;
+
+    final Duration evaluationCacheExpiry;
+
     URL synchronizerUrl;
 
     URL eventUrl;
@@ -77,6 +85,11 @@ public final class FPConfig {
         this.startWait = builder.startWait == null ? DEFAULT_START_WAIT : builder.startWait;
         this.prerequisiteDeep =
                 builder.prerequisiteDeep == null ? DEFAULT_MAX_DEPENDENT_DEEP : builder.prerequisiteDeep;
+        this.regexStepBudget = builder.regexStepBudget;
+        this.jsonVariationMode =
+                builder.jsonVariationMode == null ? JsonVariationMode.COPY : builder.jsonVariationMode;
+        this.evaluationCacheSize = builder.evaluationCacheSize;
+        this.evaluationCacheExpiry = builder.evaluationCacheExpiry;
     }
 
     public static Builder builder() {
@@ -107,6 +120,14 @@ public final class FPConfig {
 
         private Integer prerequisiteDeep;
 
+        private int regexStepBudget;
+
+        private JsonVariationMode jsonVariationMode;
+
+        private long evaluationCacheSize;
+
+        private Duration evaluationCacheExpiry;
+
         public Builder() {
         }
 
@@ -190,6 +211,46 @@ public final class FPConfig {
             return this;
         }
 
+        /**
+         * Limits how many characters a regex condition may inspect per pattern and evaluation. A match that
+         * exceeds the budget is treated as not matched. Defaults to {@code 0}, which means no limit.
+         *
+         * @param regexStepBudget maximum characters inspected per regex match, {@code 0} for no limit
+         * @return the builder
+         */
+        public Builder regexStepBudget(int regexStepBudget) {
+            this.regexStepBudget = regexStepBudget;
+            return this;
+        }
+
+        /**
+         * Selects whether JSON toggle values are copied for every call or shared between calls. Defaults to
+         * {@link JsonVariationMode#COPY}.
+         *
+         * @param jsonVariationMode how JSON variations are handed out
+         * @return the builder
+         */
+        public Builder jsonVariationMode(JsonVariationMode jsonVariationMode) {
+            this.jsonVariationMode = jsonVariationMode;
+            return this;
+        }
+
+        /**
+         * Caches the results of single toggle evaluations for the same user, for callers that evaluate the same
+         * toggle for the same user many times. A repository update that changes a toggle, its prerequisites or its
+         * segments invalidates the cached results of that toggle; toggles with datetime conditions are never
+         * cached. Disabled by default.
+         *
+         * @param maximumSize      maximum number of cached results, {@code 0} disables the cache
+         * @param expireAfterWrite how long a result is kept after it was evaluated
+         * @return the builder
+         */
+        public Builder evaluationCache(long maximumSize, Duration expireAfterWrite) {
+            this.evaluationCacheSize = maximumSize;
+            this.evaluationCacheExpiry = expireAfterWrite;
+            return this;
+        }
+
         public FPConfig build() {
             return new FPConfig(this);
         }
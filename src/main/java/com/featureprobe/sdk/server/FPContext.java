@@ -64,6 +64,8 @@ class FPContext {
 
     private final Headers headers;
 
+    private final int regexStepBudget;
+
     FPContext(String serverSdkKey, FPConfig config) {
         try {
             if (Objects.isNull(config.synchronizerUrl)) {
@@ -90,6 +92,7 @@ class FPContext {
         this.refreshInterval = config.refreshInterval;
         this.location = config.location;
         this.httpConfiguration = config.httpConfiguration;
+        this.regexStepBudget = config.regexStepBudget;
         String sdkVersion = getVersion();
         this.headers = config.httpConfiguration.headers.newBuilder().add(GET_SDK_KEY_HEADER, serverSdkKey)
                 .add(USER_AGENT_HEADER, SDK_FLAG_PREFIX + sdkVersion).build();
@@ -123,6 +126,10 @@ class FPContext {
         return headers;
     }
 
+    public int getRegexStepBudget() {
+        return regexStepBudget;
+    }
+
     public synchronized String getVersion() {
         try (
                 InputStream is =
@@ -44,6 +44,11 @@ public class FPUser {
         this.key = key;
     }
 
+    FPUser(String key, Map<String, String> attrs) {
+        this.key = key;
+        this.attrs = attrs;
+    }
+
     /**
      * Set user unique id for percentage rollout
      * @param key user unique id for percentage rollout
@@ -109,4 +114,35 @@ public class FPUser {
         return attrs.get(name);
     }
 
+    /**
+     * Check attribute exists, reading it by its {@link AttributeSlots slot} if the user is prepared
+     * @param slots the attribute slots of the repository version being evaluated, or null
+     * @param slot  attribute slot
+     * @param name  attribute name
+     * @return
+     */
+    public boolean containAttr(AttributeSlots slots, int slot, String name) {
+        return containAttr(name);
+    }
+
+    /**
+     * Get the specified attribute value, reading it by its {@link AttributeSlots slot} if the user is prepared
+     * @param slots the attribute slots of the repository version being evaluated, or null
+     * @param slot  attribute slot
+     * @param name  attribute name
+     * @return attribute value
+     */
+    public String getAttr(AttributeSlots slots, int slot, String name) {
+        return getAttr(name);
+    }
+
+    /**
+     * Copy the user into an immutable form whose attributes are read by slot during evaluation, which saves the
+     * attribute lookups when the same user is evaluated many times
+     * @return the prepared user
+     */
+    public PreparedUser prepare() {
+        return new PreparedUser(getKey(), attrs);
+    }
+
 }
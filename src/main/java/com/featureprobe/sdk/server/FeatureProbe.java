@@ -18,20 +18,32 @@
 package com.featureprobe.sdk.server;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.featureprobe.sdk.server.model.EvaluationContext;
+import com.featureprobe.sdk.server.model.RepositoryProblem;
 import com.featureprobe.sdk.server.model.Segment;
 import com.featureprobe.sdk.server.model.Toggle;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheStats;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import org.slf4j.event.Level;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A client for the FeatureProbe API. Client instances are thread-safe.
@@ -49,6 +61,18 @@ public final class FeatureProbe {
     private static final String LOG_HANDLE_ERROR = "FeatureProbe handle error. toggleKey: {}";
     private static final String LOG_CONVERSION_ERROR = "Toggle data type conversion error. toggleKey: {}";
 
+    private static final RateLimitedLogger handleErrorLogger =
+            Loggers.rateLimited(logger, Level.ERROR, LOG_HANDLE_ERROR);
+
+    private static final RateLimitedLogger conversionErrorLogger =
+            Loggers.rateLimited(logger, Level.ERROR, LOG_CONVERSION_ERROR);
+
+    /**
+     * Cached instead of a JSON variation that cannot be bound to a class, so that the failure is detected once per
+     * toggle version and class.
+     */
+    private static final Object UNCONVERTIBLE = new Object();
+
     @VisibleForTesting
     final DataRepository dataRepository;
 
@@ -61,6 +85,9 @@ public final class FeatureProbe {
     @VisibleForTesting
     FPConfig config;
 
+    @VisibleForTesting
+    EvaluationCache evaluationCache;
+
     @VisibleForTesting
     private FeatureProbe(DataRepository dataRepository) {
         this.dataRepository = dataRepository;
@@ -91,6 +118,9 @@ public final class FeatureProbe {
         }
         final FPContext context = new FPContext(serverSDKKey, config);
         this.config = config;
+        if (config.evaluationCacheSize > 0) {
+            this.evaluationCache = new EvaluationCache(config.evaluationCacheSize, config.evaluationCacheExpiry);
+        }
         this.eventProcessor = config.eventProcessorFactory.createEventProcessor(context);
         this.dataRepository = config.dataRepositoryFactory.createDataRepository(context);
         this.synchronizer = config.synchronizerFactory.createSynchronizer(context, dataRepository);
@@ -116,7 +146,49 @@ public final class FeatureProbe {
      * @return
      */
     public boolean boolValue(String toggleKey, FPUser user, boolean defaultValue) {
-        return genericEvaluate(toggleKey, user, defaultValue, Boolean.class);
+        return boolValue(dataRepository.snapshot(), toggleKey, user, defaultValue);
+    }
+
+    /**
+     * Get the evaluated value of a boolean toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public boolean boolValue(RepositorySnapshot snapshot, String toggleKey, FPUser user, boolean defaultValue) {
+        return evaluateBool(snapshot, snapshot.getToggle(toggleKey), user, defaultValue);
+    }
+
+    /**
+     * Evaluates a boolean toggle resolved from {@code snapshot}, for the value APIs and {@link BoolToggle}.
+     */
+    boolean evaluateBool(RepositorySnapshot snapshot, Toggle toggle, FPUser user, boolean defaultValue) {
+        if (Objects.isNull(toggle)) {
+            return defaultValue;
+        }
+        try {
+            if (isDebugging(snapshot) || isCached(toggle)) {
+                return genericEvaluate(snapshot, toggle, user, defaultValue, Boolean.class);
+            }
+            long evaluation = evaluateVariation(snapshot, toggle, user);
+            int variationIndex = Toggle.variationIndex(evaluation);
+            if (variationIndex == Toggle.NO_VARIATION) {
+                trackAccess(toggle, user, defaultValue, evaluation);
+                return defaultValue;
+            }
+            Object variation = toggle.getVariations().get(variationIndex);
+            trackAccess(toggle, user, variation, evaluation);
+            if (variation instanceof Boolean) {
+                return (Boolean) variation;
+            }
+            conversionErrorLogger.log(toggle.getKey());
+        } catch (Exception e) {
+            handleErrorLogger.log(toggle.getKey(), e);
+        }
+        return defaultValue;
     }
 
     /**
@@ -128,7 +200,20 @@ public final class FeatureProbe {
      * @return
      */
     public String stringValue(String toggleKey, FPUser user, String defaultValue) {
-        return genericEvaluate(toggleKey, user, defaultValue, String.class);
+        return stringValue(dataRepository.snapshot(), toggleKey, user, defaultValue);
+    }
+
+    /**
+     * Get the evaluated value of a string toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public String stringValue(RepositorySnapshot snapshot, String toggleKey, FPUser user, String defaultValue) {
+        return genericEvaluate(snapshot, snapshot.getToggle(toggleKey), user, defaultValue, String.class);
     }
 
     /**
@@ -140,7 +225,52 @@ public final class FeatureProbe {
      * @return
      */
     public double numberValue(String toggleKey, FPUser user, double defaultValue) {
-        return genericEvaluate(toggleKey, user, defaultValue, Double.class);
+        return numberValue(dataRepository.snapshot(), toggleKey, user, defaultValue);
+    }
+
+    /**
+     * Get the evaluated value of a number toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public double numberValue(RepositorySnapshot snapshot, String toggleKey, FPUser user, double defaultValue) {
+        return evaluateNumber(snapshot, snapshot.getToggle(toggleKey), user, defaultValue);
+    }
+
+    /**
+     * Evaluates a double toggle resolved from {@code snapshot}, for the value APIs and {@link NumberToggle}.
+     */
+    double evaluateNumber(RepositorySnapshot snapshot, Toggle toggle, FPUser user, double defaultValue) {
+        if (Objects.isNull(toggle)) {
+            return defaultValue;
+        }
+        try {
+            if (isDebugging(snapshot) || isCached(toggle)) {
+                return genericEvaluate(snapshot, toggle, user, defaultValue, Double.class);
+            }
+            long evaluation = evaluateVariation(snapshot, toggle, user);
+            int variationIndex = Toggle.variationIndex(evaluation);
+            if (variationIndex == Toggle.NO_VARIATION) {
+                trackAccess(toggle, user, defaultValue, evaluation);
+                return defaultValue;
+            }
+            Object variation = toggle.getVariations().get(variationIndex);
+            if (variation instanceof Integer) {
+                variation = Double.valueOf((Integer) variation);
+            }
+            trackAccess(toggle, user, variation, evaluation);
+            if (variation instanceof Double) {
+                return (Double) variation;
+            }
+            conversionErrorLogger.log(toggle.getKey());
+        } catch (Exception e) {
+            handleErrorLogger.log(toggle.getKey(), e);
+        }
+        return defaultValue;
     }
 
     /**
@@ -154,7 +284,23 @@ public final class FeatureProbe {
      * @return
      */
     public <T> T jsonValue(String toggleKey, FPUser user, T defaultValue, Class<T> clazz) {
-        return jsonEvaluate(toggleKey, user, defaultValue, clazz);
+        return jsonValue(dataRepository.snapshot(), toggleKey, user, defaultValue, clazz);
+    }
+
+    /**
+     * Get the evaluated value of a json toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public <T> T jsonValue(RepositorySnapshot snapshot, String toggleKey, FPUser user, T defaultValue,
+                           Class<T> clazz) {
+        return jsonEvaluate(snapshot, snapshot.getToggle(toggleKey), user, defaultValue, clazz);
     }
 
     /**
@@ -166,7 +312,22 @@ public final class FeatureProbe {
      * @return
      */
     public FPDetail<Boolean> boolDetail(String toggleKey, FPUser user, boolean defaultValue) {
-        return genericEvaluateDetail(toggleKey, user, defaultValue, Boolean.class);
+        return boolDetail(dataRepository.snapshot(), toggleKey, user, defaultValue);
+    }
+
+    /**
+     * Get detailed evaluation results of boolean toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public FPDetail<Boolean> boolDetail(RepositorySnapshot snapshot, String toggleKey, FPUser user,
+                                        boolean defaultValue) {
+        return genericEvaluateDetail(snapshot, toggleKey, snapshot.getToggle(toggleKey), user, defaultValue,
+                Boolean.class);
     }
 
     /**
@@ -178,7 +339,22 @@ public final class FeatureProbe {
      * @return
      */
     public FPDetail<String> stringDetail(String toggleKey, FPUser user, String defaultValue) {
-        return genericEvaluateDetail(toggleKey, user, defaultValue, String.class);
+        return stringDetail(dataRepository.snapshot(), toggleKey, user, defaultValue);
+    }
+
+    /**
+     * Get detailed evaluation results of string toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public FPDetail<String> stringDetail(RepositorySnapshot snapshot, String toggleKey, FPUser user,
+                                         String defaultValue) {
+        return genericEvaluateDetail(snapshot, toggleKey, snapshot.getToggle(toggleKey), user, defaultValue,
+                String.class);
     }
 
     /**
@@ -190,7 +366,22 @@ public final class FeatureProbe {
      * @return
      */
     public FPDetail<Double> numberDetail(String toggleKey, FPUser user, double defaultValue) {
-        return genericEvaluateDetail(toggleKey, user, defaultValue, Double.class);
+        return numberDetail(dataRepository.snapshot(), toggleKey, user, defaultValue);
+    }
+
+    /**
+     * Get detailed evaluation results of number toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public FPDetail<Double> numberDetail(RepositorySnapshot snapshot, String toggleKey, FPUser user,
+                                         double defaultValue) {
+        return genericEvaluateDetail(snapshot, toggleKey, snapshot.getToggle(toggleKey), user, defaultValue,
+                Double.class);
     }
 
     /**
@@ -204,7 +395,214 @@ public final class FeatureProbe {
      * @return
      */
     public <T> FPDetail<T> jsonDetail(String toggleKey, FPUser user, T defaultValue, Class<T> clazz) {
-        return jsonEvaluateDetail(toggleKey, user, defaultValue, clazz);
+        return jsonDetail(dataRepository.snapshot(), toggleKey, user, defaultValue, clazz);
+    }
+
+    /**
+     * Get detailed evaluation results of json toggle in a pinned repository version, see {@link #snapshot()}
+     *
+     * @param snapshot     {@link RepositorySnapshot}
+     * @param toggleKey
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public <T> FPDetail<T> jsonDetail(RepositorySnapshot snapshot, String toggleKey, FPUser user, T defaultValue,
+                                      Class<T> clazz) {
+        return jsonEvaluateDetail(snapshot, toggleKey, snapshot.getToggle(toggleKey), user, defaultValue, clazz);
+    }
+
+    /**
+     * Get a handle to evaluate a boolean toggle without looking it up by key on every call, see
+     * {@link BoolToggle}.
+     *
+     * @param toggleKey the toggle to evaluate, which need not exist yet
+     * @return the handle
+     * @throws IllegalArgumentException if the toggle exists and has a variation that is not a boolean
+     */
+    public BoolToggle boolToggle(String toggleKey) {
+        checkVariations(toggleKey, Boolean.class);
+        return new BoolToggle(this, toggleKey);
+    }
+
+    /**
+     * Get a handle to evaluate a string toggle without looking it up by key on every call, see
+     * {@link StringToggle}.
+     *
+     * @param toggleKey the toggle to evaluate, which need not exist yet
+     * @return the handle
+     * @throws IllegalArgumentException if the toggle exists and has a variation that is not a string
+     */
+    public StringToggle stringToggle(String toggleKey) {
+        checkVariations(toggleKey, String.class);
+        return new StringToggle(this, toggleKey);
+    }
+
+    /**
+     * Get a handle to evaluate a number toggle without looking it up by key on every call, see
+     * {@link NumberToggle}.
+     *
+     * @param toggleKey the toggle to evaluate, which need not exist yet
+     * @return the handle
+     * @throws IllegalArgumentException if the toggle exists and has a variation that is not a number
+     */
+    public NumberToggle numberToggle(String toggleKey) {
+        checkVariations(toggleKey, Double.class);
+        return new NumberToggle(this, toggleKey);
+    }
+
+    /**
+     * Get a handle to evaluate a json toggle without looking it up by key on every call, see {@link JsonToggle}.
+     *
+     * @param toggleKey the toggle to evaluate, which need not exist yet
+     * @param clazz     the class to bind the variations to
+     * @param <T>
+     * @return the handle
+     * @throws IllegalArgumentException if the toggle exists and has a variation that cannot be bound to
+     *                                  {@code clazz}
+     */
+    public <T> JsonToggle<T> jsonToggle(String toggleKey, Class<T> clazz) {
+        Toggle toggle = dataRepository.snapshot().getToggle(toggleKey);
+        if (Objects.nonNull(toggle) && Objects.nonNull(toggle.getVariations())) {
+            for (int i = 0; i < toggle.getVariations().size(); i++) {
+                if (bindVariation(toggle, i, clazz) == UNCONVERTIBLE) {
+                    throw new IllegalArgumentException("Variation " + i + " of toggle " + toggleKey
+                            + " cannot be bound to " + clazz.getName());
+                }
+            }
+        }
+        return new JsonToggle<>(this, toggleKey, clazz);
+    }
+
+    /**
+     * Get detailed evaluation results of all toggles for one user, see
+     * {@link #evaluateAll(FPUser, Predicate, boolean)}.
+     *
+     * @param user {@link FPUser}
+     * @return details by toggle key
+     */
+    public Map<String, FPDetail<Object>> evaluateAll(FPUser user) {
+        return evaluateAll(user, toggleKey -> true, false);
+    }
+
+    /**
+     * Get detailed evaluation results of the selected toggles for one user. All toggles are evaluated against the
+     * same repository version, segments and prerequisites are evaluated at most once for the whole batch, each
+     * attribute is parsed at most once, see {@link FPUser#prepare()}, and the access events are recorded together.
+     * Values are the raw variations, as there is no default value to convert them to; a toggle that fails to
+     * evaluate has a {@code null} value.
+     *
+     * @param user            {@link FPUser}
+     * @param toggleKeyFilter selects the toggles to evaluate by key
+     * @param clientOnly      if true, only toggles available to client SDKs are evaluated
+     * @return details by toggle key, empty if the repository is not initialized
+     */
+    public Map<String, FPDetail<Object>> evaluateAll(FPUser user, Predicate<String> toggleKeyFilter,
+                                                     boolean clientOnly) {
+        Map<String, FPDetail<Object>> details = new HashMap<>();
+        RepositorySnapshot snapshot = dataRepository.snapshot();
+        if (!snapshot.initialized()) {
+            return details;
+        }
+        Map<String, Toggle> toggles = snapshot.getToggles();
+        EvaluationContext context = new EvaluationContext(toggles, snapshot.getSegments());
+        boolean debug = isDebugging(snapshot);
+        FPUser prepared = user.prepare();
+        List<Event> events = new ArrayList<>();
+        toggles.forEach((toggleKey, toggle) -> {
+            if (!toggleKeyFilter.test(toggleKey) || (clientOnly && !Boolean.TRUE.equals(toggle.getForClient()))) {
+                return;
+            }
+            details.put(toggleKey, evaluateRawDetail(toggle, prepared, context, debug, events));
+        });
+        eventProcessor.pushAll(events);
+        return details;
+    }
+
+    /**
+     * Get detailed evaluation results of one toggle for many users, for offline jobs such as exports or campaigns.
+     * The repository version is pinned when this method is called, and the users are evaluated in parallel on the
+     * common fork-join pool when the returned stream is consumed; run the terminal operation inside another
+     * {@link java.util.concurrent.ForkJoinPool} to use that pool instead. Values are the raw variations, see
+     * {@link #evaluateAll(FPUser, Predicate, boolean)}.
+     *
+     * @param toggleKey   the toggle to evaluate
+     * @param users       the users to evaluate the toggle for
+     * @param trackEvents if false, no access events are recorded for the batch
+     * @return every user with its detail, in the order of {@code users} if it is ordered
+     */
+    public Stream<Map.Entry<FPUser, FPDetail<Object>>> evaluateBatch(String toggleKey, Stream<FPUser> users,
+                                                                     boolean trackEvents) {
+        RepositorySnapshot snapshot = dataRepository.snapshot();
+        boolean initialized = snapshot.initialized();
+        Map<String, Toggle> toggles = snapshot.getToggles();
+        Map<String, Segment> segments = snapshot.getSegments();
+        Toggle toggle = toggles.get(toggleKey);
+        boolean debug = isDebugging(snapshot);
+        return users.parallel().map(user -> {
+            FPDetail<Object> detail;
+            if (!initialized) {
+                detail = new FPDetail<>();
+                detail.setReason("FeatureProbe repository uninitialized");
+            } else if (Objects.isNull(toggle)) {
+                detail = new FPDetail<>();
+                detail.setReason("Toggle not exist");
+            } else {
+                List<Event> events = trackEvents ? new ArrayList<>(2) : null;
+                detail = evaluateRawDetail(toggle, user, new EvaluationContext(toggles, segments), debug, events);
+                if (trackEvents) {
+                    eventProcessor.pushAll(events);
+                }
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(user, detail);
+        });
+    }
+
+    /**
+     * Get detailed evaluation results of one toggle for many users, see {@link #evaluateBatch(String, Stream,
+     * boolean)}.
+     *
+     * @param toggleKey   the toggle to evaluate
+     * @param users       the users to evaluate the toggle for
+     * @param trackEvents if false, no access events are recorded for the batch
+     * @return every user with its detail, in the order of {@code users}
+     */
+    public Stream<Map.Entry<FPUser, FPDetail<Object>>> evaluateBatch(String toggleKey, Iterable<FPUser> users,
+                                                                     boolean trackEvents) {
+        return evaluateBatch(toggleKey, StreamSupport.stream(users.spliterator(), true), trackEvents);
+    }
+
+    /**
+     * Get the current repository version, to pin several evaluations of one request to it: pass the snapshot to the
+     * value and detail methods that take one, and they evaluate against the same toggles and segments even if the
+     * repository is refreshed meanwhile. A snapshot is immutable and holds on to its version until it is dropped.
+     *
+     * @return the current snapshot, {@link RepositorySnapshot#UNINITIALIZED} if the repository is not initialized
+     */
+    public RepositorySnapshot snapshot() {
+        return dataRepository.snapshot();
+    }
+
+    /**
+     * Get the invalid data found when the current repository version was loaded. The toggles with problems are
+     * quarantined: every evaluation serves the default value, with the problem as the reason.
+     *
+     * @return the problems of the current version, empty if there are none or the repository is not initialized
+     */
+    public List<RepositoryProblem> repositoryProblems() {
+        return dataRepository.getProblems();
+    }
+
+    /**
+     * Get the hit and miss counts of the evaluation cache, see
+     * {@link FPConfig.Builder#evaluationCache(long, java.time.Duration)}
+     *
+     * @return the cache statistics, all zero if the cache is disabled
+     */
+    public CacheStats evaluationCacheStats() {
+        return Objects.isNull(evaluationCache) ? new CacheStats(0, 0, 0, 0, 0, 0) : evaluationCache.stats();
     }
 
     /**
@@ -224,6 +622,7 @@ public final class FeatureProbe {
         eventProcessor.shutdown();
         synchronizer.close();
         dataRepository.close();
+        Loggers.flushRateLimited();
     }
 
     /**
@@ -256,96 +655,91 @@ public final class FeatureProbe {
         eventProcessor.push(new CustomEvent(eventName, user, value));
     }
 
-    private <T> T jsonEvaluate(String toggleKey, FPUser user, T defaultValue, Class<T> clazz) {
+    <T> T jsonEvaluate(RepositorySnapshot snapshot, Toggle toggle, FPUser user, T defaultValue, Class<T> clazz) {
+        if (Objects.isNull(toggle)) {
+            return defaultValue;
+        }
         try {
-            Toggle toggle = dataRepository.getToggle(toggleKey);
-            Map<String, Segment> segments = dataRepository.getAllSegment();
-            Map<String, Toggle> toggles = dataRepository.getAllToggle();
-            if (Objects.nonNull(toggle)) {
-                EvaluationResult evalResult = toggle.eval(user, toggles, segments, defaultValue,
-                        config.prerequisiteDeep);
-                String value = mapper.writeValueAsString(evalResult.getValue());
-                trackEvent(toggle, evalResult, user);
-                return mapper.readValue(value, clazz);
+            EvaluationResult evalResult = evaluate(snapshot, toggle, user, defaultValue);
+            trackEvent(snapshot, toggle, evalResult, user);
+            Object value = convertJson(toggle, evalResult, clazz);
+            if (value != UNCONVERTIBLE) {
+                return bound(value);
             }
-        } catch (JsonProcessingException e) {
-            logger.error(LOG_CONVERSION_ERROR, toggleKey, e);
+            conversionErrorLogger.log(toggle.getKey());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            conversionErrorLogger.log(toggle.getKey(), e);
         } catch (Exception e) {
-            logger.error(LOG_HANDLE_ERROR, toggleKey, e);
+            handleErrorLogger.log(toggle.getKey(), e);
         }
         return defaultValue;
     }
 
-    private <T> T genericEvaluate(String toggleKey, FPUser user, T defaultValue, Class<T> clazz) {
+    <T> T genericEvaluate(RepositorySnapshot snapshot, Toggle toggle, FPUser user, T defaultValue, Class<T> clazz) {
+        if (Objects.isNull(toggle)) {
+            return defaultValue;
+        }
         try {
-            Toggle toggle = dataRepository.getToggle(toggleKey);
-            Map<String, Segment> segments = dataRepository.getAllSegment();
-            Map<String, Toggle> toggles = dataRepository.getAllToggle();
-            if (Objects.nonNull(toggle)) {
-                EvaluationResult evalResult = toggle.eval(user, toggles, segments, defaultValue,
-                        config.prerequisiteDeep);
-                trackEvent(toggle, evalResult, user);
+            EvaluationResult evalResult = evaluate(snapshot, toggle, user, defaultValue);
+            trackEvent(snapshot, toggle, evalResult, user);
+            if (isInstance(toggle, evalResult.getValue(), clazz)) {
                 return clazz.cast(evalResult.getValue());
             }
-        } catch (ClassCastException e) {
-            logger.error(LOG_CONVERSION_ERROR, toggleKey, e);
+            conversionErrorLogger.log(toggle.getKey());
         } catch (Exception e) {
-            logger.error(LOG_HANDLE_ERROR, toggleKey, e);
+            handleErrorLogger.log(toggle.getKey(), e);
         }
         return defaultValue;
     }
 
-    private <T> FPDetail<T> jsonEvaluateDetail(String toggleKey, FPUser user, T defaultValue, Class<T> clazz) {
+    <T> FPDetail<T> jsonEvaluateDetail(RepositorySnapshot snapshot, String toggleKey, Toggle toggle, FPUser user,
+                                       T defaultValue, Class<T> clazz) {
         FPDetail<T> detail = new FPDetail<>();
         try {
-            return getEvaluateDetail(toggleKey, user, defaultValue, clazz, true);
-        } catch (ClassCastException | JsonProcessingException e) {
-            logger.error(LOG_CONVERSION_ERROR, toggleKey, e);
+            return getEvaluateDetail(snapshot, toggleKey, toggle, user, defaultValue, clazz, true);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            conversionErrorLogger.log(toggleKey, e);
             detail.setReason(REASON_TYPE_MISMATCH);
         } catch (Exception e) {
-            logger.error(LOG_HANDLE_ERROR, toggleKey, e);
+            handleErrorLogger.log(toggleKey, e);
             detail.setReason(REASON_HANDLE_ERROR);
         }
         detail.setValue(defaultValue);
         return detail;
     }
 
-    private <T> FPDetail<T> genericEvaluateDetail(String toggleKey, FPUser user, T defaultValue, Class<T> clazz) {
+    <T> FPDetail<T> genericEvaluateDetail(RepositorySnapshot snapshot, String toggleKey, Toggle toggle, FPUser user,
+                                          T defaultValue, Class<T> clazz) {
         FPDetail<T> detail = new FPDetail<>();
         try {
-            return getEvaluateDetail(toggleKey, user, defaultValue, clazz, false);
-        } catch (ClassCastException | JsonProcessingException e) {
-            logger.error(LOG_CONVERSION_ERROR, toggleKey, e);
-            detail.setReason(REASON_TYPE_MISMATCH);
+            return getEvaluateDetail(snapshot, toggleKey, toggle, user, defaultValue, clazz, false);
         } catch (Exception e) {
-            logger.error(LOG_HANDLE_ERROR, toggleKey, e);
+            handleErrorLogger.log(toggleKey, e);
             detail.setReason(REASON_HANDLE_ERROR);
         }
         detail.setValue(defaultValue);
         return detail;
     }
 
-    private <T> FPDetail<T> getEvaluateDetail(String toggleKey, FPUser user, T defaultValue,
-                                              Class<T> clazz,
-                                              boolean isJson) throws ClassCastException, JsonProcessingException {
+    private <T> FPDetail<T> getEvaluateDetail(RepositorySnapshot snapshot, String toggleKey, Toggle toggle,
+                                              FPUser user, T defaultValue, Class<T> clazz,
+                                              boolean isJson) throws JsonProcessingException {
         FPDetail<T> detail = new FPDetail<>();
-        if (this.dataRepository.initialized()) {
-            Toggle toggle = dataRepository.getToggle(toggleKey);
-            Map<String, Segment> segments = dataRepository.getAllSegment();
-            Map<String, Toggle> toggles = dataRepository.getAllToggle();
+        if (snapshot.initialized()) {
             if (Objects.nonNull(toggle)) {
-                EvaluationResult evalResult = toggle.eval(user, toggles, segments, defaultValue,
-                        config.prerequisiteDeep);
-                if (isJson) {
-                    String res = mapper.writeValueAsString(evalResult.getValue());
-                    detail.setValue(mapper.readValue(res, clazz));
-                } else {
-                    detail.setValue(clazz.cast(evalResult.getValue()));
+                EvaluationResult evalResult = evaluate(snapshot, toggle, user, defaultValue);
+                Object value = isJson ? convertJson(toggle, evalResult, clazz) : evalResult.getValue();
+                if (value == UNCONVERTIBLE || !isJson && !isInstance(toggle, value, clazz)) {
+                    conversionErrorLogger.log(toggleKey);
+                    detail.setReason(REASON_TYPE_MISMATCH);
+                    detail.setValue(defaultValue);
+                    return detail;
                 }
+                detail.setValue(isJson ? bound(value) : clazz.cast(value));
                 detail.setReason(evalResult.getReason());
                 detail.setRuleIndex(evalResult.getRuleIndex());
                 detail.setVersion(Optional.of(evalResult.getVersion()));
-                trackEvent(toggle, evalResult, user);
+                trackEvent(snapshot, toggle, evalResult, user);
             } else {
                 detail.setReason("Toggle not exist");
                 detail.setValue(defaultValue);
@@ -357,20 +751,162 @@ public final class FeatureProbe {
         return detail;
     }
 
-    private void trackEvent(Toggle toggle, EvaluationResult evalResult, FPUser user) {
+    /**
+     * Evaluates without a default value and collects the access and debug events into {@code events}, unless it
+     * is null.
+     */
+    private FPDetail<Object> evaluateRawDetail(Toggle toggle, FPUser user, EvaluationContext context, boolean debug,
+                                               List<Event> events) {
+        FPDetail<Object> detail = new FPDetail<>();
+        try {
+            EvaluationResult evalResult = toggle.eval(user, context, null, config.prerequisiteDeep);
+            detail.setValue(evalResult.getValue());
+            detail.setReason(evalResult.getReason());
+            detail.setRuleIndex(evalResult.getRuleIndex());
+            detail.setVersion(Optional.of(evalResult.getVersion()));
+            if (Objects.nonNull(events)) {
+                events.add(buildAccessEvent(toggle, evalResult, user));
+                if (debug) {
+                    events.add(buildDebugEvent(toggle, evalResult, user));
+                }
+            }
+        } catch (Exception e) {
+            handleErrorLogger.log(toggle.getKey(), e);
+            detail.setReason(REASON_HANDLE_ERROR);
+        }
+        return detail;
+    }
+
+    private void checkVariations(String toggleKey, Class<?> clazz) {
+        Toggle toggle = dataRepository.snapshot().getToggle(toggleKey);
+        if (Objects.nonNull(toggle) && Objects.nonNull(toggle.getVariations()) && !toggle.hasVariationsOf(clazz)) {
+            throw new IllegalArgumentException("Toggle " + toggleKey + " has variations that are not "
+                    + clazz.getSimpleName());
+        }
+    }
+
+    /**
+     * @return whether an evaluated value can be returned as a {@code clazz}, without checking it if the variation
+     * types of the toggle, checked once per version, all are
+     */
+    private static boolean isInstance(Toggle toggle, Object value, Class<?> clazz) {
+        return toggle.hasVariationsOf(clazz) || Objects.isNull(value) || clazz.isInstance(value);
+    }
+
+    /**
+     * Binds a JSON variation to {@code clazz}. A variation is parsed into a tree once per toggle version and
+     * bound from that tree on every call, or, in {@link JsonVariationMode#SHARED} mode, bound once per class.
+     * Default values are not cached.
+     *
+     * @return the bound value, or {@link #UNCONVERTIBLE} if the variation cannot be bound to {@code clazz}
+     */
+    private Object convertJson(Toggle toggle, EvaluationResult evalResult, Class<?> clazz)
+            throws JsonProcessingException {
+        if (!evalResult.getVariationIndex().isPresent()) {
+            return mapper.readValue(mapper.writeValueAsString(evalResult.getValue()), clazz);
+        }
+        return bindVariation(toggle, evalResult.getVariationIndex().get(), clazz);
+    }
+
+    /**
+     * Binds a variation to {@code clazz}, see {@link #convertJson(Toggle, EvaluationResult, Class)}.
+     *
+     * @return the bound value, or {@link #UNCONVERTIBLE} if the variation cannot be bound to {@code clazz}
+     */
+    private Object bindVariation(Toggle toggle, int index, Class<?> clazz) {
+        Object converted = toggle.getConvertedVariation(clazz, index);
+        if (Objects.nonNull(converted) && (converted == UNCONVERTIBLE
+                || config.jsonVariationMode == JsonVariationMode.SHARED)) {
+            return converted;
+        }
+        JsonNode tree = variationTree(toggle, index);
+        if (JsonNode.class.isAssignableFrom(clazz) && clazz.isInstance(tree)) {
+            return tree.deepCopy();
+        }
+        try {
+            converted = mapper.treeToValue(tree, clazz);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            conversionErrorLogger.log(toggle.getKey(), e);
+            converted = UNCONVERTIBLE;
+        }
+        if (converted == UNCONVERTIBLE || config.jsonVariationMode == JsonVariationMode.SHARED) {
+            toggle.cacheConvertedVariation(clazz, index, converted);
+        }
+        return converted;
+    }
+
+    /**
+     * @return a value bound by {@link #convertJson(Toggle, EvaluationResult, Class)}, which is of the type it was
+     * bound to, including when that is a primitive type
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T bound(Object value) {
+        return (T) value;
+    }
+
+    private JsonNode variationTree(Toggle toggle, int index) {
+        JsonNode tree = (JsonNode) toggle.getConvertedVariation(JsonNode.class, index);
+        if (Objects.isNull(tree)) {
+            tree = mapper.valueToTree(toggle.getVariations().get(index));
+            toggle.cacheConvertedVariation(JsonNode.class, index, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Evaluates a single toggle, through the {@link EvaluationCache} if it is enabled and the toggle is cacheable.
+     */
+    private EvaluationResult evaluate(RepositorySnapshot snapshot, Toggle toggle, FPUser user, Object defaultValue) {
+        Map<String, Segment> segments = snapshot.getSegments();
+        Map<String, Toggle> toggles = snapshot.getToggles();
+        if (isCached(toggle)) {
+            return evaluationCache.get(toggle, user,
+                    () -> toggle.eval(user, toggles, segments, null, config.prerequisiteDeep))
+                    .withDefaultValue(defaultValue);
+        }
+        return toggle.eval(user, toggles, segments, defaultValue, config.prerequisiteDeep);
+    }
+
+    private boolean isCached(Toggle toggle) {
+        return Objects.nonNull(evaluationCache) && toggle.cacheable();
+    }
+
+    /**
+     * Evaluates a toggle by index only, for the value APIs of primitive toggles, see
+     * {@link Toggle#evalVariation(FPUser, Map, Map, int)}. Debug events need the reason, and cached toggles keep
+     * whole results, so those APIs take the generic path while debugging or for cached toggles.
+     */
+    private long evaluateVariation(RepositorySnapshot snapshot, Toggle toggle, FPUser user) {
+        return toggle.evalVariation(user, snapshot.getToggles(), snapshot.getSegments(), config.prerequisiteDeep);
+    }
+
+    private void trackAccess(Toggle toggle, FPUser user, Object value, long evaluation) {
+        int variationIndex = Toggle.variationIndex(evaluation);
+        int ruleIndex = Toggle.ruleIndex(evaluation);
+        eventProcessor.push(new AccessEvent(user, toggle.getKey(), value, toggle.getVersion(),
+                variationIndex == Toggle.NO_VARIATION ? null : variationIndex,
+                ruleIndex == Toggle.NO_RULE ? null : ruleIndex, isTrackAccessEvents(toggle)));
+    }
+
+    private void trackEvent(RepositorySnapshot snapshot, Toggle toggle, EvaluationResult evalResult, FPUser user) {
         eventProcessor.push(buildAccessEvent(toggle, evalResult, user));
-        if (Objects.nonNull(dataRepository.getDebugUntilTime())
-                && dataRepository.getDebugUntilTime() >= System.currentTimeMillis()) {
+        if (isDebugging(snapshot)) {
             eventProcessor.push(buildDebugEvent(toggle, evalResult, user));
         }
     }
 
+    private static boolean isDebugging(RepositorySnapshot snapshot) {
+        return snapshot.isDebugging(System.currentTimeMillis());
+    }
+
     private Event buildAccessEvent(Toggle toggle, EvaluationResult evalResult, FPUser user) {
-        boolean trackAccessEvents =
-                Objects.isNull(toggle.getTrackAccessEvents()) ? false : toggle.getTrackAccessEvents().booleanValue();
         return new AccessEvent(user, toggle.getKey(), evalResult.getValue(),
                 evalResult.getVersion(), evalResult.getVariationIndex().orElse(null),
-                evalResult.getRuleIndex().orElse(null), trackAccessEvents);
+                evalResult.getRuleIndex().orElse(null), isTrackAccessEvents(toggle));
+    }
+
+    private boolean isTrackAccessEvents(Toggle toggle) {
+        return Objects.isNull(toggle.getTrackAccessEvents()) ? false : toggle.getTrackAccessEvents().booleanValue();
     }
 
     private Event buildDebugEvent(Toggle toggle, EvaluationResult evalResult, FPUser user) {
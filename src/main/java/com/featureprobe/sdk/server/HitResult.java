@@ -17,31 +17,56 @@
 
 package com.featureprobe.sdk.server;
 
+import java.util.Objects;
 import java.util.Optional;
 
 public final class HitResult {
 
-    private boolean hit;
+    public static final HitResult MISS = new HitResult(false);
 
-    private Optional<Integer> index = Optional.empty();
+    public static final HitResult HIT = new HitResult(true);
 
-    private Optional<String> reason = Optional.empty();
+    private final boolean hit;
+
+    private final Optional<Integer> index;
+
+    private final ReasonCode reasonCode;
+
+    private final Object firstReasonArgument;
+
+    private final Object secondReasonArgument;
+
+    private volatile Optional<String> reason;
 
     public HitResult(boolean result) {
-        this.hit = result;
+        this(result, Optional.empty(), Optional.empty());
     }
 
     public HitResult(boolean hit, Optional<String> reason) {
-        this.hit = hit;
-        this.reason = reason;
+        this(hit, Optional.empty(), reason);
     }
 
     public HitResult(boolean result, Optional<Integer> index, Optional<String> reason) {
         this.hit = result;
         this.index = index;
+        this.reasonCode = null;
+        this.firstReasonArgument = null;
+        this.secondReasonArgument = null;
         this.reason = reason;
     }
 
+    /**
+     * A result whose reason is formatted from {@code reasonCode} and its arguments when it is first read.
+     */
+    public HitResult(boolean hit, Optional<Integer> index, ReasonCode reasonCode, Object firstReasonArgument,
+                     Object secondReasonArgument) {
+        this.hit = hit;
+        this.index = index;
+        this.reasonCode = reasonCode;
+        this.firstReasonArgument = firstReasonArgument;
+        this.secondReasonArgument = secondReasonArgument;
+    }
+
     public boolean isHit() {
         return hit;
     }
@@ -51,6 +76,11 @@ public final class HitResult {
     }
 
     public Optional<String> getReason() {
+        Optional<String> reason = this.reason;
+        if (Objects.isNull(reason)) {
+            reason = Optional.of(reasonCode.format(firstReasonArgument, secondReasonArgument));
+            this.reason = reason;
+        }
         return reason;
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.featureprobe.sdk.server;
+
+/**
+ * A handle to evaluate a json toggle, from {@link FeatureProbe#jsonToggle(String, Class)}. Unlike
+ * {@link FeatureProbe#jsonValue(String, FPUser, Object, Class)}, a handle looks its toggle up once per repository
+ * version rather than once per call, and its variations are checked to bind to the class when it is created.
+ * Handles are thread-safe and meant to be kept, for example in a static field.
+ *
+ * @param <T> the class the variations are bound to
+ */
+public final class JsonToggle<T> extends ToggleHandle {
+
+    private final Class<T> clazz;
+
+    JsonToggle(FeatureProbe featureProbe, String key, Class<T> clazz) {
+        super(featureProbe, key);
+        this.clazz = clazz;
+    }
+
+    /**
+     * Get the evaluated value of the toggle
+     *
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public T value(FPUser user, T defaultValue) {
+        Resolution resolved = resolve();
+        return featureProbe.jsonEvaluate(resolved.snapshot, resolved.toggle, user, defaultValue, clazz);
+    }
+
+    /**
+     * Get detailed evaluation results of the toggle
+     *
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public FPDetail<T> detail(FPUser user, T defaultValue) {
+        Resolution resolved = resolve();
+        return featureProbe.jsonEvaluateDetail(resolved.snapshot, key, resolved.toggle, user, defaultValue, clazz);
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server;
+
+/**
+ * How {@link FeatureProbe#jsonValue} and {@link FeatureProbe#jsonDetail} hand out JSON variations. Either way a
+ * variation is parsed once per toggle version, not on every call.
+ */
+public enum JsonVariationMode {
+
+    /**
+     * Every call returns a new object bound from the cached variation, so callers may modify it. This is the
+     * default.
+     */
+    COPY,
+
+    /**
+     * Calls share one object per toggle version, variation and class, so repeated calls cost a lookup. Callers
+     * must treat the returned objects as immutable.
+     */
+    SHARED
+
+}
@@ -19,6 +19,11 @@ package com.featureprobe.sdk.server;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public abstract class Loggers {
 
@@ -35,4 +40,34 @@ public abstract class Loggers {
     public static final Logger EVENT = LoggerFactory.getLogger(EVENT_LOGGER_NAME);
     public static final Logger EVALUATOR = LoggerFactory.getLogger(EVALUATOR_LOGGER_NAME);
 
+    /**
+     * How often a {@link RateLimitedLogger} logs its message at most.
+     */
+    public static final long RATE_LIMIT_INTERVAL_SECONDS = 10;
+
+    private static final List<RateLimitedLogger> rateLimitedLoggers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the logger of a call site on a hot path, such as evaluation or event recording, which logs
+     * {@code message} at most once every {@link #RATE_LIMIT_INTERVAL_SECONDS} for each value of its first argument
+     * and counts the repeats in between.
+     */
+    public static RateLimitedLogger rateLimited(Logger logger, Level level, String message) {
+        RateLimitedLogger rateLimited = new RateLimitedLogger(logger, level, message, RATE_LIMIT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+        rateLimitedLoggers.add(rateLimited);
+        return rateLimited;
+    }
+
+    /**
+     * Reports the messages every {@link RateLimitedLogger} has suppressed since it last logged, see
+     * {@link RateLimitedLogger#flush()}. Run every {@link #RATE_LIMIT_INTERVAL_SECONDS} by the event processor and
+     * when the client is closed, so that a count is not held back until the same message comes again.
+     */
+    public static void flushRateLimited() {
+        for (RateLimitedLogger rateLimited : rateLimitedLoggers) {
+            rateLimited.flush();
+        }
+    }
+
 }
@@ -17,86 +17,97 @@
 
 package com.featureprobe.sdk.server;
 
+import com.featureprobe.sdk.server.model.CompileContext;
 import com.featureprobe.sdk.server.model.Repository;
+import com.featureprobe.sdk.server.model.RepositoryProblem;
 import com.featureprobe.sdk.server.model.Segment;
 import com.featureprobe.sdk.server.model.Toggle;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 final class MemoryDataRepository implements DataRepository {
 
-    private volatile Repository data;
+    private final CompileContext compileContext;
 
-    private volatile boolean initialized = false;
+    private volatile RepositorySnapshot snapshot = RepositorySnapshot.UNINITIALIZED;
 
     private volatile Long updatedTimestamp = 0L;
 
+    MemoryDataRepository() {
+        this(CompileContext.DEFAULT);
+    }
+
+    MemoryDataRepository(CompileContext compileContext) {
+        this.compileContext = compileContext;
+    }
+
     @Override
     public void refresh(Repository repository) {
 
         if (Objects.nonNull(repository) && Objects.nonNull(repository.getToggles())
                 && Objects.nonNull(repository.getSegments())) {
-            if (Objects.nonNull(data)
-                    && Objects.nonNull(data.getVersion())
+            Long version = snapshot.getVersion();
+            if (Objects.nonNull(version)
                     && Objects.nonNull(repository.getVersion())
-                    && data.getVersion() >= repository.getVersion()) {
+                    && version >= repository.getVersion()) {
                 return;
             }
             Map<String, Toggle> toggles = ImmutableMap.copyOf(repository.getToggles());
             Map<String, Segment> segments = ImmutableMap.copyOf(repository.getSegments());
-            data = new Repository(toggles, segments, repository.getDebugUntilTime(), repository.getVersion());
-            this.initialized = true;
+            Repository compiled = new Repository(toggles, segments, repository.getDebugUntilTime(),
+                    repository.getVersion());
+            compiled.compile(compileContext);
+            snapshot = RepositorySnapshot.of(compiled);
             this.updatedTimestamp = System.currentTimeMillis();
         }
 
     }
 
+    @Override
+    public RepositorySnapshot snapshot() {
+        return snapshot;
+    }
+
     @Override
     public Toggle getToggle(String key) {
-        if (initialized) {
-            return data.getToggles().get(key);
-        }
-        return null;
+        return snapshot.getToggle(key);
     }
 
     @Override
     public Map<String, Toggle> getAllToggle() {
-        if (initialized) {
-            return data.getToggles();
-        }
-        return ImmutableMap.of();
+        return snapshot.getToggles();
     }
 
     @Override
     public Segment getSegment(String key) {
-        if (initialized) {
-            return data.getSegments().get(key);
-        }
-        return null;
+        return snapshot.getSegment(key);
     }
 
     @Override
     public Map<String, Segment> getAllSegment() {
-        if (initialized) {
-            return data.getSegments();
-        }
-        return ImmutableMap.of();
+        return snapshot.getSegments();
     }
 
     @Override
     public Long getDebugUntilTime() {
-        return data.getDebugUntilTime();
+        return snapshot.getDebugUntilTime();
+    }
+
+    @Override
+    public List<RepositoryProblem> getProblems() {
+        return snapshot.getProblems();
     }
 
     @Override
     public boolean initialized() {
-        return this.initialized;
+        return snapshot.initialized();
     }
 
     @Override
     public void close() {
-        data = null;
+        snapshot = RepositorySnapshot.UNINITIALIZED;
     }
 }
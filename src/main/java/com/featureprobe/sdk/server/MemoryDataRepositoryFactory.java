@@ -17,11 +17,13 @@
 
 package com.featureprobe.sdk.server;
 
+import com.featureprobe.sdk.server.model.CompileContext;
+
 final class MemoryDataRepositoryFactory implements DataRepositoryFactory {
 
     @Override
     public DataRepository createDataRepository(FPContext context) {
-        return new MemoryDataRepository();
+        return new MemoryDataRepository(new CompileContext(context.getRegexStepBudget()));
     }
 
 }
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * An immutable copy of a {@link FPUser} whose attributes are also stored by {@link AttributeSlots slot}, so that
+ * conditions read them by index instead of hashing the attribute name. Number, datetime and semver conditions
+ * also share the parsed value of an attribute, which is parsed the first time a condition reads it. The slots are
+ * those of the repository version the user is evaluated against: the user binds its attributes to the slot table of
+ * a version the first time it is evaluated against it, and binds again when a new version is loaded. Prepare a user
+ * once and reuse it for many evaluations; see {@link FPUser#prepare()}.
+ */
+public final class PreparedUser extends FPUser {
+
+    /**
+     * Marks a slot whose attribute the user does not have, as a present attribute may still have a null value.
+     */
+    private static final String ABSENT = new String("absent");
+
+    /**
+     * Caches a blank attribute, which parses to null.
+     */
+    private static final Object BLANK = new Object();
+
+    /**
+     * Caches an attribute that cannot be parsed.
+     */
+    private static final Object INVALID = new Object();
+
+    /**
+     * Not volatile: a binding only changes through its thread-safe parse caches, so a thread that reads a stale one
+     * only binds again.
+     */
+    private Binding binding;
+
+    PreparedUser(String key, Map<String, String> attrs) {
+        super(key, Collections.unmodifiableMap(new HashMap<>(attrs)));
+    }
+
+    @Override
+    public boolean containAttr(AttributeSlots slots, int slot, String name) {
+        Binding binding = bound(slots, slot);
+        if (Objects.nonNull(binding)) {
+            return binding.values[slot] != ABSENT;
+        }
+        return containAttr(name);
+    }
+
+    @Override
+    public String getAttr(AttributeSlots slots, int slot, String name) {
+        Binding binding = bound(slots, slot);
+        if (Objects.nonNull(binding)) {
+            String value = binding.values[slot];
+            return value == ABSENT ? null : value;
+        }
+        return getAttr(name);
+    }
+
+    /**
+     * @return the attribute parsed as a double, or null if it is missing, blank or not a number, see
+     * {@link #isUnparseableNumberAttr(AttributeSlots, int, String)}
+     */
+    public Double getNumberAttr(AttributeSlots slots, int slot, String name) {
+        Binding binding = bound(slots, slot);
+        return parsed(binding, Objects.isNull(binding) ? null : binding.numbers, slot, name, Double::valueOf);
+    }
+
+    /**
+     * @return whether the attribute is present and not blank but not a number, which is only parsed once
+     */
+    public boolean isUnparseableNumberAttr(AttributeSlots slots, int slot, String name) {
+        Binding binding = bound(slots, slot);
+        return unparseable(binding, Objects.isNull(binding) ? null : binding.numbers, slot, name, Double::valueOf);
+    }
+
+    /**
+     * @return the attribute parsed as a timestamp in seconds, or null if it is missing, blank or not a long, see
+     * {@link #isUnparseableDatetimeAttr(AttributeSlots, int, String)}
+     */
+    public Long getDatetimeAttr(AttributeSlots slots, int slot, String name) {
+        Binding binding = bound(slots, slot);
+        return parsed(binding, Objects.isNull(binding) ? null : binding.datetimes, slot, name, Long::valueOf);
+    }
+
+    /**
+     * @return whether the attribute is present and not blank but not a long, which is only parsed once
+     */
+    public boolean isUnparseableDatetimeAttr(AttributeSlots slots, int slot, String name) {
+        Binding binding = bound(slots, slot);
+        return unparseable(binding, Objects.isNull(binding) ? null : binding.datetimes, slot, name, Long::valueOf);
+    }
+
+    /**
+     * @return the attribute parsed as a version, or null if it is missing or blank
+     */
+    public ComparableVersion getSemverAttr(AttributeSlots slots, int slot, String name) {
+        Binding binding = bound(slots, slot);
+        return parsed(binding, Objects.isNull(binding) ? null : binding.semvers, slot, name,
+                ComparableVersion::new);
+    }
+
+    /**
+     * @return the binding of this user to {@code slots}, or null if the attribute has to be read by name
+     */
+    private Binding bound(AttributeSlots slots, int slot) {
+        if (Objects.isNull(slots) || slot < 0) {
+            return null;
+        }
+        Binding binding = this.binding;
+        if (Objects.isNull(binding) || binding.slots != slots) {
+            binding = new Binding(slots, getAttrs());
+            this.binding = binding;
+        }
+        return slot < binding.values.length ? binding : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T parsed(Binding binding, AtomicReferenceArray<Object> cache, int slot, String name,
+                         Function<String, T> parser) {
+        Object parsed = Objects.isNull(binding) ? parse(getAttr(name), parser) : cached(binding, cache, slot, parser);
+        return parsed == BLANK || parsed == INVALID ? null : (T) parsed;
+    }
+
+    private boolean unparseable(Binding binding, AtomicReferenceArray<Object> cache, int slot, String name,
+                                Function<String, ?> parser) {
+        return (Objects.isNull(binding) ? parse(getAttr(name), parser) : cached(binding, cache, slot, parser))
+                == INVALID;
+    }
+
+    private static Object cached(Binding binding, AtomicReferenceArray<Object> cache, int slot,
+                                 Function<String, ?> parser) {
+        Object parsed = cache.get(slot);
+        if (parsed == null) {
+            String value = binding.values[slot];
+            parsed = value == ABSENT ? BLANK : parse(value, parser);
+            cache.set(slot, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the parsed value, {@link #BLANK} or {@link #INVALID}
+     */
+    private static Object parse(String value, Function<String, ?> parser) {
+        if (StringUtils.isBlank(value)) {
+            return BLANK;
+        }
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * @return this user, which binds to the slots of every version it is evaluated against
+     */
+    @Override
+    public PreparedUser prepare() {
+        return this;
+    }
+
+    @Override
+    public FPUser stableRollout(String key) {
+        throw new UnsupportedOperationException("A prepared user cannot be modified");
+    }
+
+    @Override
+    public FPUser with(String name, String value) {
+        throw new UnsupportedOperationException("A prepared user cannot be modified");
+    }
+
+    @Override
+    public void setAttrs(Map<String, String> attrs) {
+        throw new UnsupportedOperationException("A prepared user cannot be modified");
+    }
+
+    /**
+     * The attributes of the user by the slots of one repository version, with their parsed values.
+     */
+    private static final class Binding {
+
+        private final AttributeSlots slots;
+
+        private final String[] values;
+
+        private final AtomicReferenceArray<Object> numbers;
+
+        private final AtomicReferenceArray<Object> datetimes;
+
+        private final AtomicReferenceArray<Object> semvers;
+
+        Binding(AttributeSlots slots, Map<String, String> attrs) {
+            String[] values = new String[slots.size()];
+            Arrays.fill(values, ABSENT);
+            for (Map.Entry<String, String> attr : attrs.entrySet()) {
+                int slot = slots.find(attr.getKey());
+                if (slot != AttributeSlots.NO_SLOT && slot < values.length) {
+                    values[slot] = attr.getValue();
+                }
+            }
+            this.slots = slots;
+            this.values = values;
+            this.numbers = new AtomicReferenceArray<>(values.length);
+            this.datetimes = new AtomicReferenceArray<>(values.length);
+            this.semvers = new AtomicReferenceArray<>(values.length);
+        }
+
+    }
+
+}
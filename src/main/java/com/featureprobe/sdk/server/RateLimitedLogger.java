@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs one message of one call site at most once per interval for each value of its first argument, such as a
+ * toggle key, so that an error on one toggle does not hide the errors on the others. Repeats within the interval
+ * only increment a lock-free counter, and their count is reported with the next message logged for the same
+ * argument, or by {@link #flush()}, so an error that happens on every evaluation or every dropped event costs an
+ * increment instead of a log line. Created per call site with {@link Loggers#rateLimited(Logger, Level, String)}.
+ */
+public final class RateLimitedLogger {
+
+    /**
+     * Bounds the first arguments limited apart, since some, such as user attribute values, are unbounded. The
+     * others share one limit.
+     */
+    static final int MAX_KEYS = 1000;
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private static final Object NO_KEY = new Object();
+
+    private static final AtomicLongFieldUpdater<Limit> NEXT_LOG_NANOS =
+            AtomicLongFieldUpdater.newUpdater(Limit.class, "nextLogNanos");
+
+    private final Logger logger;
+
+    private final Level level;
+
+    private final String message;
+
+    private final String summary;
+
+    private final int placeholders;
+
+    private final long intervalNanos;
+
+    private final ConcurrentMap<Object, Limit> limits = new ConcurrentHashMap<>();
+
+    private final Limit overflow = new Limit();
+
+    RateLimitedLogger(Logger logger, Level level, String message, long interval, TimeUnit unit) {
+        this.logger = logger;
+        this.level = level;
+        this.message = message;
+        this.summary = message + " ({} similar messages suppressed)";
+        this.placeholders = (message.length() - message.replace("{}", "").length()) / 2;
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    public void log() {
+        Limit limit = acquire(null, null);
+        if (Objects.nonNull(limit)) {
+            write(limit, NO_ARGUMENTS);
+        }
+    }
+
+    public void log(Object argument) {
+        Limit limit = acquire(argument, null);
+        if (Objects.nonNull(limit)) {
+            write(limit, new Object[]{argument});
+        }
+    }
+
+    public void log(Object first, Object second) {
+        Limit limit = acquire(first, second);
+        if (Objects.nonNull(limit)) {
+            write(limit, new Object[]{first, second});
+        }
+    }
+
+    /**
+     * @return the number of messages suppressed since the last one was logged, for all first arguments
+     */
+    public long suppressed() {
+        long suppressed = overflow.suppressed.sum();
+        for (Limit limit : limits.values()) {
+            suppressed += limit.suppressed.sum();
+        }
+        return suppressed;
+    }
+
+    /**
+     * Logs the count of the messages suppressed since the last one of each first argument, with the arguments of
+     * the last suppressed one, and forgets the arguments whose interval is over. Run for every logger by
+     * {@link Loggers#flushRateLimited()}.
+     */
+    public void flush() {
+        long now = System.nanoTime();
+        for (Map.Entry<Object, Limit> entry : limits.entrySet()) {
+            Limit limit = entry.getValue();
+            flush(limit);
+            if (now - limit.nextLogNanos >= 0 && limits.remove(entry.getKey(), limit)) {
+                // counts the repeats that raced with the removal, later ones go to a new limit
+                flush(limit);
+            }
+        }
+        flush(overflow);
+    }
+
+    private void flush(Limit limit) {
+        long count = limit.suppressed.sumThenReset();
+        if (count == 0 || !isEnabled()) {
+            return;
+        }
+        Object[] arguments = new Object[placeholders + 1];
+        if (placeholders > 0) {
+            arguments[0] = limit.first == NO_KEY ? null : limit.first;
+        }
+        if (placeholders > 1) {
+            arguments[1] = limit.second;
+        }
+        arguments[placeholders] = count;
+        write(summary, arguments);
+    }
+
+    /**
+     * @return the limit of {@code first} if a message can be logged now, or null if it is suppressed
+     */
+    private Limit acquire(Object first, Object second) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Limit limit = limit(Objects.isNull(first) ? NO_KEY : first);
+        long now = System.nanoTime();
+        long next = limit.nextLogNanos;
+        if (now - next >= 0 && NEXT_LOG_NANOS.compareAndSet(limit, next, now + intervalNanos)) {
+            return limit;
+        }
+        limit.suppressed.increment();
+        limit.first = first;
+        limit.second = second instanceof Throwable ? null : second;
+        return null;
+    }
+
+    private Limit limit(Object key) {
+        Limit limit = limits.get(key);
+        if (Objects.nonNull(limit)) {
+            return limit;
+        }
+        if (limits.size() >= MAX_KEYS) {
+            return overflow;
+        }
+        return limits.computeIfAbsent(key, k -> new Limit());
+    }
+
+    /**
+     * Appends the suppressed count to the arguments, before a trailing exception, which slf4j logs with its
+     * stack trace only in last position.
+     */
+    private void write(Limit limit, Object[] arguments) {
+        long count = limit.suppressed.sumThenReset();
+        if (count == 0) {
+            write(message, arguments);
+            return;
+        }
+        Object[] withCount = Arrays.copyOf(arguments, arguments.length + 1);
+        int last = arguments.length;
+        if (last > 0 && arguments[last - 1] instanceof Throwable) {
+            withCount[last] = arguments[last - 1];
+            last--;
+        }
+        withCount[last] = count;
+        write(summary, withCount);
+    }
+
+    private boolean isEnabled() {
+        switch (level) {
+            case ERROR:
+                return logger.isErrorEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            default:
+                return logger.isTraceEnabled();
+        }
+    }
+
+    private void write(String format, Object[] arguments) {
+        switch (level) {
+            case ERROR:
+                logger.error(format, arguments);
+                break;
+            case WARN:
+                logger.warn(format, arguments);
+                break;
+            case INFO:
+                logger.info(format, arguments);
+                break;
+            case DEBUG:
+                logger.debug(format, arguments);
+                break;
+            default:
+                logger.trace(format, arguments);
+        }
+    }
+
+    /**
+     * The interval and the suppressed count of one first argument. The arguments of the last suppressed message are
+     * only reported by {@link #flush()}, so they are written without synchronization; an exception is not kept.
+     */
+    private static final class Limit {
+
+        final LongAdder suppressed = new LongAdder();
+
+        volatile long nextLogNanos = System.nanoTime();
+
+        Object first;
+
+        Object second;
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server;
+
+/**
+ * The reasons an evaluation can report, with the arguments they are formatted from. Evaluation records a code and
+ * its arguments, and the text is only built when a reason is read, so the value-only APIs never format it.
+ */
+public enum ReasonCode {
+
+    MISSING_ATTRIBUTE {
+        @Override
+        String format(Object userKey, Object attribute) {
+            return String.format("Warning: User with key '%s' does not have attribute name '%s'", userKey, attribute);
+        }
+    },
+
+    PERCENTAGE_GROUP {
+        @Override
+        String format(Object groupIndex, Object unused) {
+            return String.format("selected %d percentage group", groupIndex);
+        }
+    },
+
+    NO_PERCENTAGE_GROUP {
+        @Override
+        String format(Object userKey, Object unused) {
+            return String.format("Warning: User with key '%s' is in no percentage group", userKey);
+        }
+    },
+
+    RULE_HIT {
+        @Override
+        String format(Object ruleIndex, Object unused) {
+            return "Rule " + ruleIndex + " hit";
+        }
+    },
+
+    /**
+     * The argument is the {@link HitResult} of the last rule that did not match, whose warning is appended.
+     */
+    DEFAULT_RULE_HIT {
+        @Override
+        String format(Object lastMiss, Object unused) {
+            return "Default rule hit. " + SERVE.format(lastMiss, null);
+        }
+    },
+
+    /**
+     * The argument is the {@link HitResult} of the serve, whose reason is reported as is.
+     */
+    SERVE {
+        @Override
+        String format(Object hitResult, Object unused) {
+            return hitResult == null ? "" : ((HitResult) hitResult).getReason().orElse("");
+        }
+    },
+
+    TOGGLE_DISABLED {
+        @Override
+        String format(Object unused, Object unusedToo) {
+            return "Toggle disabled.";
+        }
+    };
+
+    abstract String format(Object first, Object second);
+
+}
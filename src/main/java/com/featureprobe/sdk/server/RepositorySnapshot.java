@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.featureprobe.sdk.server;
+
+import com.featureprobe.sdk.server.model.Repository;
+import com.featureprobe.sdk.server.model.RepositoryProblem;
+import com.featureprobe.sdk.server.model.Segment;
+import com.featureprobe.sdk.server.model.Toggle;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One version of the repository: toggles, segments, debug-until time and version that were loaded together. A
+ * snapshot never changes; a refresh publishes a new one. Evaluations read the current snapshot once, so that a
+ * refresh in between cannot mix toggles of one version with segments of another, and several evaluations can be
+ * pinned to one version by passing them the snapshot from {@link FeatureProbe#snapshot()}.
+ */
+public final class RepositorySnapshot {
+
+    /**
+     * The snapshot of a repository that has not been loaded yet.
+     */
+    public static final RepositorySnapshot UNINITIALIZED = new RepositorySnapshot(ImmutableMap.of(),
+            ImmutableMap.of(), null, null, ImmutableList.of(), false);
+
+    /**
+     * The last snapshot assembled for each repository that does not publish its own, see {@link #assemble}. Weak
+     * keys compare repositories by identity and let a closed repository be collected.
+     */
+    private static final Cache<DataRepository, RepositorySnapshot> assembled = CacheBuilder.newBuilder()
+            .weakKeys().build();
+
+    private final Map<String, Toggle> toggles;
+
+    private final Map<String, Segment> segments;
+
+    private final Long debugUntilTime;
+
+    private final Long version;
+
+    private final List<RepositoryProblem> problems;
+
+    private final boolean initialized;
+
+    RepositorySnapshot(Map<String, Toggle> toggles, Map<String, Segment> segments, Long debugUntilTime,
+                       Long version, List<RepositoryProblem> problems, boolean initialized) {
+        this.toggles = toggles;
+        this.segments = segments;
+        this.debugUntilTime = debugUntilTime;
+        this.version = version;
+        this.problems = problems;
+        this.initialized = initialized;
+    }
+
+    /**
+     * @param repository a compiled repository, see {@link Repository#compile}, which must not be modified afterwards
+     * @return the snapshot of {@code repository}
+     */
+    public static RepositorySnapshot of(Repository repository) {
+        return new RepositorySnapshot(repository.getToggles(), repository.getSegments(),
+                repository.getDebugUntilTime(), repository.getVersion(), repository.getProblems(), true);
+    }
+
+    /**
+     * Assembles the snapshot of a repository from its getters. The last one is reused as long as the getters
+     * return the same toggles, segments and problems instances and the same debug-until time, which stand in for
+     * the repository version, so that it is not allocated again on every evaluation.
+     *
+     * @return the current snapshot of {@code repository}, see {@link DataRepository#snapshot()}
+     */
+    static RepositorySnapshot assemble(DataRepository repository) {
+        Map<String, Toggle> toggles = repository.getAllToggle();
+        Map<String, Segment> segments = repository.getAllSegment();
+        Long debugUntilTime = repository.getDebugUntilTime();
+        List<RepositoryProblem> problems = repository.getProblems();
+        RepositorySnapshot last = assembled.getIfPresent(repository);
+        if (Objects.nonNull(last) && last.toggles == toggles && last.segments == segments
+                && Objects.equals(last.debugUntilTime, debugUntilTime) && last.problems == problems) {
+            return last;
+        }
+        RepositorySnapshot snapshot = new RepositorySnapshot(toggles, segments, debugUntilTime, null, problems, true);
+        assembled.put(repository, snapshot);
+        return snapshot;
+    }
+
+    public Toggle getToggle(String key) {
+        return toggles.get(key);
+    }
+
+    public Map<String, Toggle> getToggles() {
+        return toggles;
+    }
+
+    public Segment getSegment(String key) {
+        return segments.get(key);
+    }
+
+    public Map<String, Segment> getSegments() {
+        return segments;
+    }
+
+    public Long getDebugUntilTime() {
+        return debugUntilTime;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public List<RepositoryProblem> getProblems() {
+        return problems;
+    }
+
+    public boolean initialized() {
+        return initialized;
+    }
+
+    /**
+     * @return whether debug events are recorded at {@code nowMillis}
+     */
+    boolean isDebugging(long nowMillis) {
+        return Objects.nonNull(debugUntilTime) && debugUntilTime >= nowMillis;
+    }
+
+}
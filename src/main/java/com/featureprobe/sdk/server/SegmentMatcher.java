@@ -17,14 +17,13 @@
 
 package com.featureprobe.sdk.server;
 
-import com.featureprobe.sdk.server.model.Segment;
+import com.featureprobe.sdk.server.model.EvaluationContext;
 
 import java.util.List;
-import java.util.Map;
 
 @FunctionalInterface
 public interface SegmentMatcher {
 
-    boolean match(FPUser user, Map<String, Segment> segments, List<String> objects);
+    boolean match(FPUser user, EvaluationContext context, List<String> objects);
 
 }
@@ -19,11 +19,9 @@ package com.featureprobe.sdk.server;
 
 import org.apache.maven.artifact.versioning.ComparableVersion;
 
-import java.util.List;
-
 @FunctionalInterface
 public interface SemverMatcher {
 
-    boolean match(ComparableVersion target, List<String> objects);
+    boolean match(ComparableVersion target, ComparableVersion[] objects);
 
 }
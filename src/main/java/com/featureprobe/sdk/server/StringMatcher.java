@@ -17,11 +17,9 @@
 
 package com.featureprobe.sdk.server;
 
-import java.util.List;
-
 @FunctionalInterface
 public interface StringMatcher {
 
-    boolean match(String target, List<String> objects);
+    boolean match(String target);
 
 }
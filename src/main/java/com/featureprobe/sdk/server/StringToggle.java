@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.featureprobe.sdk.server;
+
+/**
+ * A handle to evaluate a string toggle, from {@link FeatureProbe#stringToggle(String)}. Unlike
+ * {@link FeatureProbe#stringValue(String, FPUser, String)}, a handle looks its toggle up once per repository version
+ * rather than once per call, and its variation type is checked when it is created. Handles are thread-safe and
+ * meant to be kept, for example in a static field.
+ */
+public final class StringToggle extends ToggleHandle {
+
+    StringToggle(FeatureProbe featureProbe, String key) {
+        super(featureProbe, key);
+    }
+
+    /**
+     * Get the evaluated value of the toggle
+     *
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public String value(FPUser user, String defaultValue) {
+        Resolution resolved = resolve();
+        return featureProbe.genericEvaluate(resolved.snapshot, resolved.toggle, user, defaultValue, String.class);
+    }
+
+    /**
+     * Get detailed evaluation results of the toggle
+     *
+     * @param user         {@link FPUser}
+     * @param defaultValue
+     * @return
+     */
+    public FPDetail<String> detail(FPUser user, String defaultValue) {
+        Resolution resolved = resolve();
+        return featureProbe.genericEvaluateDetail(resolved.snapshot, key, resolved.toggle, user, defaultValue,
+                String.class);
+    }
+
+}
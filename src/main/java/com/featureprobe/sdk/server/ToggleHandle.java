@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.featureprobe.sdk.server;
+
+import com.featureprobe.sdk.server.model.Toggle;
+
+import java.util.Objects;
+
+/**
+ * Base of the typed toggle handles. A handle resolves its toggle by key once per repository version: every call
+ * reads the current {@link RepositorySnapshot} and looks the key up again only if the snapshot changed.
+ */
+abstract class ToggleHandle {
+
+    final FeatureProbe featureProbe;
+
+    final String key;
+
+    /**
+     * Not volatile: a resolution is immutable, so a thread that reads a stale one only resolves the key again.
+     */
+    private Resolution resolution;
+
+    ToggleHandle(FeatureProbe featureProbe, String key) {
+        this.featureProbe = featureProbe;
+        this.key = key;
+    }
+
+    /**
+     * @return the key of the toggle
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the current snapshot with the toggle of this handle in it, which is null if it does not exist
+     */
+    final Resolution resolve() {
+        RepositorySnapshot snapshot = featureProbe.dataRepository.snapshot();
+        Resolution resolved = this.resolution;
+        if (Objects.isNull(resolved) || resolved.snapshot != snapshot) {
+            resolved = new Resolution(snapshot, snapshot.getToggle(key));
+            this.resolution = resolved;
+        }
+        return resolved;
+    }
+
+    static final class Resolution {
+
+        final RepositorySnapshot snapshot;
+
+        final Toggle toggle;
+
+        Resolution(RepositorySnapshot snapshot, Toggle toggle) {
+            this.snapshot = snapshot;
+            this.toggle = toggle;
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton telling whether a string contains any of many objects, in a single pass over the string.
+ */
+final class AhoCorasick {
+
+    private final State root;
+
+    private AhoCorasick(State root) {
+        this.root = root;
+    }
+
+    static AhoCorasick of(List<String> objects) {
+        Builder root = new Builder();
+        for (String object : objects) {
+            Builder node = root;
+            for (int i = 0; i < object.length(); i++) {
+                node = node.children.computeIfAbsent(object.charAt(i), k -> new Builder());
+            }
+            node.output = true;
+        }
+        linkFailures(root);
+        return new AhoCorasick(root.freeze());
+    }
+
+    /**
+     * @return whether {@code target} contains any of the objects
+     */
+    boolean containsAny(String target) {
+        State state = root;
+        if (state.output) {
+            return true;
+        }
+        for (int i = 0; i < target.length(); i++) {
+            char c = target.charAt(i);
+            State next = state.child(c);
+            while (next == null && state != root) {
+                state = state.failure;
+                next = state.child(c);
+            }
+            state = next == null ? root : next;
+            if (state.output) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void linkFailures(Builder root) {
+        Deque<Builder> queue = new ArrayDeque<>();
+        root.failure = root;
+        for (Builder child : root.children.values()) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Builder node = queue.poll();
+            for (Map.Entry<Character, Builder> entry : node.children.entrySet()) {
+                Builder child = entry.getValue();
+                Builder failure = node.failure;
+                while (failure != root && !failure.children.containsKey(entry.getKey())) {
+                    failure = failure.failure;
+                }
+                Builder target = failure.children.get(entry.getKey());
+                child.failure = target == null || target == child ? root : target;
+                child.output |= child.failure.output;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static final class Builder {
+
+        final Map<Character, Builder> children = new TreeMap<>();
+
+        Builder failure;
+
+        boolean output;
+
+        State state;
+
+        State freeze() {
+            if (state == null) {
+                state = new State(output);
+                char[] keys = new char[children.size()];
+                State[] states = new State[children.size()];
+                int i = 0;
+                for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                    keys[i] = entry.getKey();
+                    states[i] = entry.getValue().freeze();
+                    i++;
+                }
+                state.keys = keys;
+                state.children = states;
+                state.failure = failure == this ? state : failure.freeze();
+            }
+            return state;
+        }
+
+    }
+
+    private static final class State {
+
+        private final boolean output;
+
+        private char[] keys;
+
+        private State[] children;
+
+        private State failure;
+
+        State(boolean output) {
+            this.output = output;
+        }
+
+        State child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes percentage rollout buckets: the last four bytes of {@code SHA-1(utf8(hashKey + salt))} as an unsigned
+ * integer, modulo the bucket size, where a null key is concatenated as {@code "null"}. The digest and buffers are reused per thread and the salt is encoded by the
+ * caller once, so hashing a key does not allocate.
+ */
+final class BucketHasher {
+
+    private static final int SHA1_LENGTH = 20;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final ThreadLocal<BucketHasher> HASHERS = ThreadLocal.withInitial(BucketHasher::new);
+
+    private final MessageDigest digest;
+
+    private final byte[] hash = new byte[SHA1_LENGTH];
+
+    private byte[] buffer = new byte[64];
+
+    private BucketHasher() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 MessageDigest is not available", e);
+        }
+    }
+
+    static int bucket(String key, String salt, byte[] saltBytes, int bucketSize) {
+        String hashKey = String.valueOf(key);
+        if (!hashKey.isEmpty() && Character.isHighSurrogate(hashKey.charAt(hashKey.length() - 1))
+                && !salt.isEmpty() && Character.isLowSurrogate(salt.charAt(0))) {
+            // a surrogate pair split between key and salt only encodes correctly as one string
+            byte[] value = (hashKey + salt).getBytes(StandardCharsets.UTF_8);
+            return HASHERS.get().hash(value, value.length, EMPTY, bucketSize);
+        }
+        BucketHasher hasher = HASHERS.get();
+        int keyLength = hasher.encode(hashKey);
+        return hasher.hash(hasher.buffer, keyLength, saltBytes, bucketSize);
+    }
+
+    private int hash(byte[] key, int keyLength, byte[] salt, int bucketSize) {
+        digest.update(key, 0, keyLength);
+        digest.update(salt);
+        try {
+            digest.digest(hash, 0, SHA1_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException("SHA-1 digest failed", e);
+        }
+        long value = ((hash[16] & 0xFFL) << 24) | ((hash[17] & 0xFFL) << 16)
+                | ((hash[18] & 0xFFL) << 8) | (hash[19] & 0xFFL);
+        return (int) (value % bucketSize);
+    }
+
+    /**
+     * Encodes {@code value} as UTF-8 into the reused buffer, replacing unpaired surrogates with {@code '?'} like
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     *
+     * @return the number of bytes written
+     */
+    private int encode(String value) {
+        int length = value.length();
+        if (buffer.length < length * 3) {
+            buffer = new byte[length * 3];
+        }
+        byte[] out = buffer;
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out[position++] = (byte) c;
+            } else if (c < 0x800) {
+                out[position++] = (byte) (0xC0 | (c >> 6));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    out[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    out[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    out[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    out[position++] = '?';
+                }
+            } else {
+                out[position++] = (byte) (0xE0 | (c >> 12));
+                out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+}
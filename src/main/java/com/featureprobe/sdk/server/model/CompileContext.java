@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import com.featureprobe.sdk.server.AttributeSlots;
+
+/**
+ * Settings shared by everything compiled for one repository version, see {@link Repository#compile(CompileContext)}.
+ */
+public final class CompileContext {
+
+    public static final CompileContext DEFAULT = new CompileContext(0);
+
+    private final int regexStepBudget;
+
+    private final AttributeSlots attributeSlots;
+
+    /**
+     * @param regexStepBudget the maximum number of characters a regex condition may inspect per pattern and match,
+     *                        or {@code 0} for no limit
+     */
+    public CompileContext(int regexStepBudget) {
+        this(regexStepBudget, null);
+    }
+
+    private CompileContext(int regexStepBudget, AttributeSlots attributeSlots) {
+        this.regexStepBudget = Math.max(0, regexStepBudget);
+        this.attributeSlots = attributeSlots;
+    }
+
+    /**
+     * @return a context with the same settings and a new {@link AttributeSlots} table, for compiling one repository
+     * version
+     */
+    public CompileContext forVersion() {
+        return new CompileContext(regexStepBudget, new AttributeSlots());
+    }
+
+    public int getRegexStepBudget() {
+        return regexStepBudget;
+    }
+
+    /**
+     * @return the attribute slots of the version being compiled, or null if attributes are read by name, as they
+     * are when a condition is compiled outside of a repository version
+     */
+    public AttributeSlots getAttributeSlots() {
+        return attributeSlots;
+    }
+
+}
@@ -21,15 +21,27 @@ import com.featureprobe.sdk.server.*;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.artifact.versioning.ComparableVersion;
 import org.slf4j.Logger;
+import org.slf4j.event.Level;
 
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
 import java.util.regex.PatternSyntaxException;
 
 public final class Condition {
 
     private static final Logger logger = Loggers.EVALUATOR;
 
+    private static final RateLimitedLogger regexBudgetLogger = Loggers.rateLimited(logger, Level.WARN,
+            "Regex match exceeded the step budget. subject: {}, objects: {}");
+
+    private static final RateLimitedLogger datetimeMismatchLogger = Loggers.rateLimited(logger, Level.ERROR,
+            "User attribute type mismatch. subject: {}, attribute value: {}, target type long");
+
+    private static final RateLimitedLogger numberMismatchLogger = Loggers.rateLimited(logger, Level.ERROR,
+            "User attribute type mismatch. subject: {}, attribute value: {}, target type double");
+
     private ConditionType type;
 
     private String subject;
@@ -38,9 +50,24 @@ public final class Condition {
 
     private List<String> objects;
 
+    private ConditionMatcher matcher;
+
+    private AttributeSlots attributeSlots;
+
+    private int slot = AttributeSlots.NO_SLOT;
+
+    private RepositoryProblem.Kind problem;
+
     private static final long MILLISECONDS_IN_ONE_SEC = 1000;
 
-    private static final Map<PredicateType, StringMatcher> stringMatchers = new EnumMap<>(PredicateType.class);
+    /**
+     * Up to this many objects, prefix, suffix and substring conditions compare the objects one by one. Larger
+     * conditions are compiled into a trie or an Aho-Corasick automaton that is walked once per evaluation.
+     */
+    private static final int MAX_SCANNED_OBJECTS = 8;
+
+    private static final Map<PredicateType, StringMatcherCompiler> stringMatchers =
+            new EnumMap<>(PredicateType.class);
 
     private static final Map<PredicateType, SegmentMatcher> segmentMatchers = new EnumMap<>(PredicateType.class);
 
@@ -52,176 +79,406 @@ public final class Condition {
 
     static {
 
-        stringMatchers.put(PredicateType.IS_ONE_OF, (target, objects) -> objects.contains(target));
-        stringMatchers.put(PredicateType.ENDS_WITH,
-                (target, objects) -> Objects.nonNull(target) && objects.stream().anyMatch(target::endsWith));
-        stringMatchers.put(PredicateType.STARTS_WITH,
-                (target, objects) -> Objects.nonNull(target) && objects.stream().anyMatch(target::startsWith));
-        stringMatchers.put(PredicateType.CONTAINS,
-                (target, objects) -> Objects.nonNull(target) && objects.stream().anyMatch(target::contains));
-        stringMatchers.put(PredicateType.MATCHES_REGEX,
-                (target, objects) -> objects.stream()
-                        .anyMatch(s -> Objects.nonNull(target) && Pattern.compile(s).matcher(target).find()));
-        stringMatchers.put(PredicateType.IS_NOT_ANY_OF, (target, objects) -> !objects.contains(target));
-        stringMatchers.put(PredicateType.DOES_NOT_END_WITH,
-                (target, objects) -> Objects.nonNull(target) && objects.stream().noneMatch(target::endsWith));
-        stringMatchers.put(PredicateType.DOES_NOT_START_WITH,
-                (target, objects) -> Objects.nonNull(target) && objects.stream().noneMatch(target::startsWith));
-        stringMatchers.put(PredicateType.DOES_NOT_CONTAIN,
-                (target, objects) -> Objects.nonNull(target) && objects.stream().noneMatch(target::contains));
-        stringMatchers.put(PredicateType.DOES_NOT_MATCH_REGEX,
-                (target, objects) -> Objects.nonNull(target)
-                        && objects.stream().noneMatch(s -> Pattern.compile(s).matcher(target).find()));
-
-        segmentMatchers.put(PredicateType.IS_IN,
-                (user, segments, objects) -> objects.stream().anyMatch(s -> segments.get(s).contains(user, segments)));
+        stringMatchers.put(PredicateType.IS_ONE_OF, (objects, context) -> {
+            Set<String> set = new HashSet<>(objects);
+            return set::contains;
+        });
+        stringMatchers.put(PredicateType.ENDS_WITH, (objects, context) -> {
+            StringMatcher endsWith = endsWithAny(objects);
+            return target -> Objects.nonNull(target) && endsWith.match(target);
+        });
+        stringMatchers.put(PredicateType.STARTS_WITH, (objects, context) -> {
+            StringMatcher startsWith = startsWithAny(objects);
+            return target -> Objects.nonNull(target) && startsWith.match(target);
+        });
+        stringMatchers.put(PredicateType.CONTAINS, (objects, context) -> {
+            StringMatcher contains = containsAny(objects);
+            return target -> Objects.nonNull(target) && contains.match(target);
+        });
+        stringMatchers.put(PredicateType.MATCHES_REGEX, (objects, context) -> {
+            RegexObjects patterns = RegexObjects.compile(objects, context.getRegexStepBudget());
+            return target -> Objects.nonNull(target) && patterns.anyFind(target);
+        });
+        stringMatchers.put(PredicateType.IS_NOT_ANY_OF, (objects, context) -> {
+            Set<String> set = new HashSet<>(objects);
+            return target -> !set.contains(target);
+        });
+        stringMatchers.put(PredicateType.DOES_NOT_END_WITH, (objects, context) -> {
+            StringMatcher endsWith = endsWithAny(objects);
+            return target -> Objects.nonNull(target) && !endsWith.match(target);
+        });
+        stringMatchers.put(PredicateType.DOES_NOT_START_WITH, (objects, context) -> {
+            StringMatcher startsWith = startsWithAny(objects);
+            return target -> Objects.nonNull(target) && !startsWith.match(target);
+        });
+        stringMatchers.put(PredicateType.DOES_NOT_CONTAIN, (objects, context) -> {
+            StringMatcher contains = containsAny(objects);
+            return target -> Objects.nonNull(target) && !contains.match(target);
+        });
+        stringMatchers.put(PredicateType.DOES_NOT_MATCH_REGEX, (objects, context) -> {
+            RegexObjects patterns = RegexObjects.compile(objects, context.getRegexStepBudget());
+            return target -> Objects.nonNull(target) && !patterns.anyFind(target);
+        });
+
+        segmentMatchers.put(PredicateType.IS_IN, (user, context, objects) -> inAnySegment(user, context, objects));
         segmentMatchers.put(PredicateType.IS_NOT_IN,
-                (user, segments, objects) -> objects.stream().noneMatch(s -> segments.get(s).contains(user, segments)));
+                (user, context, objects) -> !inAnySegment(user, context, objects));
 
-        datetimeMatchers.put(PredicateType.AFTER,
-                ((target, objects) -> objects.stream().map(Long::parseLong).anyMatch(o -> target >= o)));
-        datetimeMatchers.put(PredicateType.BEFORE,
-                ((target, objects) -> objects.stream().map(Long::parseLong).anyMatch(o -> target < o)));
+        datetimeMatchers.put(PredicateType.AFTER, (target, objects) -> anyDatetime(target, objects, c -> c >= 0));
+        datetimeMatchers.put(PredicateType.BEFORE, (target, objects) -> anyDatetime(target, objects, c -> c < 0));
 
-        numberMatchers.put(PredicateType.EQUAL_TO,
-                ((target, objects) -> objects.stream().map(Double::parseDouble).anyMatch(o -> target == o)));
+        numberMatchers.put(PredicateType.EQUAL_TO, (target, objects) -> anyNumber(target, objects, (t, o) -> t == o));
         numberMatchers.put(PredicateType.NOT_EQUAL_TO,
-                ((target, objects) -> objects.stream().map(Double::parseDouble).noneMatch(o -> target == o)));
+                (target, objects) -> !anyNumber(target, objects, (t, o) -> t == o));
         numberMatchers.put(PredicateType.GREATER_THAN,
-                ((target, objects) -> objects.stream().map(Double::parseDouble).anyMatch(o -> target > o)));
+                (target, objects) -> anyNumber(target, objects, (t, o) -> t > o));
         numberMatchers.put(PredicateType.GREATER_OR_EQUAL,
-                ((target, objects) -> objects.stream().map(Double::parseDouble).anyMatch(o -> target >= o)));
-        numberMatchers.put(PredicateType.LESS_THAN,
-                ((target, objects) -> objects.stream().map(Double::parseDouble).anyMatch(o -> target < o)));
+                (target, objects) -> anyNumber(target, objects, (t, o) -> t >= o));
+        numberMatchers.put(PredicateType.LESS_THAN, (target, objects) -> anyNumber(target, objects, (t, o) -> t < o));
         numberMatchers.put(PredicateType.LESS_OR_EQUAL,
-                ((target, objects) -> objects.stream().map(Double::parseDouble).anyMatch(o -> target <= o)));
+                (target, objects) -> anyNumber(target, objects, (t, o) -> t <= o));
+
+        semverMatchers.put(PredicateType.EQUAL_TO, (target, objects) -> anySemver(target, objects, c -> c == 0));
+        semverMatchers.put(PredicateType.NOT_EQUAL_TO, (target, objects) -> !anySemver(target, objects, c -> c == 0));
+        semverMatchers.put(PredicateType.GREATER_THAN, (target, objects) -> anySemver(target, objects, c -> c > 0));
+        semverMatchers.put(PredicateType.GREATER_OR_EQUAL,
+                (target, objects) -> anySemver(target, objects, c -> c >= 0));
+        semverMatchers.put(PredicateType.LESS_THAN, (target, objects) -> anySemver(target, objects, c -> c < 0));
+        semverMatchers.put(PredicateType.LESS_OR_EQUAL, (target, objects) -> anySemver(target, objects, c -> c <= 0));
+
+    }
+
+    @FunctionalInterface
+    private interface StringMatcherCompiler {
+
+        StringMatcher compile(List<String> objects, CompileContext context);
+
+    }
+
+    @FunctionalInterface
+    private interface NumberComparison {
+
+        boolean test(double target, double object);
+
+    }
+
+    private static StringMatcher startsWithAny(List<String> objects) {
+        if (objects.size() <= MAX_SCANNED_OBJECTS) {
+            String[] prefixes = objects.toArray(new String[0]);
+            return target -> {
+                for (String prefix : prefixes) {
+                    if (target.startsWith(prefix)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        return PrefixTrie.ofPrefixes(objects)::matchesAny;
+    }
+
+    private static StringMatcher endsWithAny(List<String> objects) {
+        if (objects.size() <= MAX_SCANNED_OBJECTS) {
+            String[] suffixes = objects.toArray(new String[0]);
+            return target -> {
+                for (String suffix : suffixes) {
+                    if (target.endsWith(suffix)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        return PrefixTrie.ofSuffixes(objects)::matchesAny;
+    }
 
-        semverMatchers.put(PredicateType.EQUAL_TO, ((target, objects) -> objects.stream().filter(Objects::nonNull)
-                .map(ComparableVersion::new).anyMatch(t -> target.compareTo(t) == 0)));
-        semverMatchers.put(PredicateType.NOT_EQUAL_TO, ((target, objects) -> objects.stream().filter(Objects::nonNull)
-                .map(ComparableVersion::new).noneMatch(t -> target.compareTo(t) == 0)));
-        semverMatchers.put(PredicateType.GREATER_THAN, ((target, objects) -> objects.stream().filter(Objects::nonNull)
-                .map(ComparableVersion::new).anyMatch(t -> target.compareTo(t) > 0)));
-        semverMatchers.put(PredicateType.GREATER_OR_EQUAL, ((target, objects) -> objects.stream()
-                .filter(Objects::nonNull).map(ComparableVersion::new).anyMatch(t -> target.compareTo(t) >= 0)));
-        semverMatchers.put(PredicateType.LESS_THAN, ((target, objects) -> objects.stream().filter(Objects::nonNull)
-                .map(ComparableVersion::new).anyMatch(t -> target.compareTo(t) < 0)));
-        semverMatchers.put(PredicateType.LESS_OR_EQUAL, ((target, objects) -> objects.stream().filter(Objects::nonNull)
-                .map(ComparableVersion::new).anyMatch(t -> target.compareTo(t) <= 0)));
+    private static StringMatcher containsAny(List<String> objects) {
+        if (objects.size() <= MAX_SCANNED_OBJECTS) {
+            String[] fragments = objects.toArray(new String[0]);
+            return target -> {
+                for (String fragment : fragments) {
+                    if (target.contains(fragment)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        return AhoCorasick.of(objects)::containsAny;
+    }
+
+    private static boolean anyNumber(double target, double[] objects, NumberComparison comparison) {
+        for (double object : objects) {
+            if (comparison.test(target, object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyDatetime(long target, long[] objects, IntPredicate comparison) {
+        for (long object : objects) {
+            if (comparison.test(Long.compare(target, object))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the current time, for users without the attribute. A time is after any of the objects from the
+     * earliest one on, and before any of them until the latest one, so the result only changes at that instant.
+     */
+    private static LongPredicate nowMatcher(PredicateType predicate, long[] objects) {
+        if (predicate == PredicateType.AFTER) {
+            long from = LongStream.of(objects).min().orElse(Long.MAX_VALUE);
+            return now -> now >= from;
+        }
+        long until = LongStream.of(objects).max().orElse(Long.MIN_VALUE);
+        return now -> now < until;
+    }
+
+    private static boolean anySemver(ComparableVersion target, ComparableVersion[] objects,
+                                     IntPredicate comparison) {
+        for (ComparableVersion object : objects) {
+            if (comparison.test(target.compareTo(object))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    private static boolean inAnySegment(FPUser user, EvaluationContext context, List<String> segmentIds) {
+        for (int i = 0; i < segmentIds.size(); i++) {
+            Segment segment = context.getSegments().get(segmentIds.get(i));
+            if (Objects.nonNull(segment) && segment.contains(user, context)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean matchObjects(FPUser user, Map<String, Segment> segments) {
+        return matchObjects(user, new EvaluationContext(Collections.emptyMap(), segments));
+    }
+
+    public boolean matchObjects(FPUser user, EvaluationContext context) {
+        ConditionMatcher matcher = this.matcher;
+        if (Objects.isNull(matcher)) {
+            matcher = compileMatcher(CompileContext.DEFAULT);
+            this.matcher = matcher;
+        }
+        return matcher.match(user, context);
+    }
+
+    /**
+     * Resolves the matcher of this condition once, so that evaluation neither looks up the predicate tables
+     * nor dispatches on the condition type. Called for every condition when a repository version is loaded.
+     */
+    public void compile(CompileContext context) {
+        this.matcher = compileMatcher(context);
+    }
+
+    /**
+     * @return what makes this condition never match, found when it was compiled, or null if it is valid
+     */
+    RepositoryProblem.Kind problem() {
+        return problem;
+    }
+
+    private ConditionMatcher compileMatcher(CompileContext compileContext) {
+        this.problem = null;
+        AttributeSlots attributeSlots = compileContext.getAttributeSlots();
+        this.attributeSlots = attributeSlots;
+        this.slot = type == ConditionType.SEGMENT || Objects.isNull(attributeSlots)
+                ? AttributeSlots.NO_SLOT : attributeSlots.slotOf(subject);
+        if (Objects.isNull(type)) {
+            return ConditionMatcher.NEVER;
+        }
         switch (type) {
             case STRING:
-                return matchStringCondition(user);
+                StringMatcherCompiler stringMatcherCompiler = stringMatchers.get(predicate);
+                if (Objects.isNull(stringMatcherCompiler)) {
+                    return ConditionMatcher.NEVER;
+                }
+                StringMatcher stringMatcher;
+                try {
+                    stringMatcher = stringMatcherCompiler.compile(objects, compileContext);
+                } catch (PatternSyntaxException e) {
+                    this.problem = RepositoryProblem.Kind.INVALID_REGEX;
+                    return ConditionMatcher.NEVER;
+                }
+                return (user, context) -> matchStringCondition(user, stringMatcher);
 
             case SEGMENT:
-                return matchSegmentCondition(user, segments);
+                SegmentMatcher segmentMatcher = segmentMatchers.get(predicate);
+                if (Objects.isNull(segmentMatcher)) {
+                    return ConditionMatcher.NEVER;
+                }
+                return (user, context) -> segmentMatcher.match(user, context, objects);
 
             case DATETIME:
-                return matchDatetimeCondition(user);
+                DatetimeMatcher datetimeMatcher = datetimeMatchers.get(predicate);
+                if (Objects.isNull(datetimeMatcher)) {
+                    return ConditionMatcher.NEVER;
+                }
+                long[] datetimeObjects = parseDatetimeObjects();
+                if (Objects.isNull(datetimeObjects)) {
+                    this.problem = RepositoryProblem.Kind.INVALID_DATETIME;
+                    return ConditionMatcher.NEVER;
+                }
+                LongPredicate nowMatcher = nowMatcher(predicate, datetimeObjects);
+                return (user, context) -> matchDatetimeCondition(user, datetimeMatcher, datetimeObjects,
+                        nowMatcher);
 
             case NUMBER:
-                return matchNumberCondition(user);
+                NumberMatcher numberMatcher = numberMatchers.get(predicate);
+                if (Objects.isNull(numberMatcher)) {
+                    return ConditionMatcher.NEVER;
+                }
+                double[] numberObjects = parseNumberObjects();
+                if (Objects.isNull(numberObjects)) {
+                    this.problem = RepositoryProblem.Kind.INVALID_NUMBER;
+                    return ConditionMatcher.NEVER;
+                }
+                return (user, context) -> matchNumberCondition(user, numberMatcher, numberObjects);
 
             case SEMVER:
-                return matchSemverCondition(user);
+                SemverMatcher semverMatcher = semverMatchers.get(predicate);
+                if (Objects.isNull(semverMatcher)) {
+                    return ConditionMatcher.NEVER;
+                }
+                ComparableVersion[] semverObjects = parseSemverObjects();
+                return (user, context) -> matchSemverCondition(user, semverMatcher, semverObjects);
 
             default:
-                return false;
+                return ConditionMatcher.NEVER;
         }
     }
 
-    private boolean matchStringCondition(FPUser user) {
-        if (!user.containAttr(subject)) {
-            return false;
-        }
-        String subjectValue = user.getAttr(subject);
-
-        StringMatcher stringMatcher = stringMatchers.get(this.predicate);
-        if (Objects.isNull(stringMatcher)) {
-            return false;
+    private long[] parseDatetimeObjects() {
+        long[] parsed = new long[objects.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            try {
+                parsed[i] = Long.parseLong(objects.get(i));
+            } catch (NumberFormatException e) {
+                return null;
+            }
         }
+        return parsed;
+    }
 
-        try {
-            return stringMatcher.match(subjectValue, this.objects);
-        } catch (PatternSyntaxException e) {
-            logger.error("Invalid regex pattern", e);
-            return false;
+    private double[] parseNumberObjects() {
+        double[] parsed = new double[objects.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            String object = objects.get(i);
+            try {
+                if (Objects.isNull(object)) {
+                    throw new NumberFormatException("null");
+                }
+                parsed[i] = Double.parseDouble(object);
+            } catch (NumberFormatException e) {
+                return null;
+            }
         }
+        return parsed;
     }
 
-    private boolean matchSegmentCondition(FPUser user, Map<String, Segment> segments) {
-        SegmentMatcher segmentMatcher = segmentMatchers.get(this.predicate);
-        if (Objects.isNull(segmentMatcher)) {
-            return false;
-        }
+    private ComparableVersion[] parseSemverObjects() {
+        return objects.stream().filter(Objects::nonNull).map(ComparableVersion::new)
+                .toArray(ComparableVersion[]::new);
+    }
 
-        return segmentMatcher.match(user, segments, this.objects);
+    /**
+     * @return whether the user has the attribute this condition reads
+     */
+    boolean hasAttribute(FPUser user) {
+        return user.containAttr(attributeSlots, slot, subject);
     }
 
-    private boolean matchDatetimeCondition(FPUser user) {
-        DatetimeMatcher datetimeMatcher = datetimeMatchers.get(this.predicate);
-        if (Objects.isNull(datetimeMatcher)) {
+    private boolean matchStringCondition(FPUser user, StringMatcher stringMatcher) {
+        String subjectValue = user.getAttr(attributeSlots, slot, subject);
+        if (Objects.isNull(subjectValue) && !user.containAttr(attributeSlots, slot, subject)) {
             return false;
         }
 
-        String customValue = user.getAttr(this.subject);
-        long cv;
-        try {
-            cv = StringUtils.isBlank(customValue)
-                    ? System.currentTimeMillis() / MILLISECONDS_IN_ONE_SEC
-                    : Long.parseLong(customValue);
-        } catch (NumberFormatException e) {
-            logger.error("User attribute type mismatch. attribute value: {}, target type long", customValue);
-            return false;
-        }
         try {
-            return datetimeMatcher.match(cv, objects);
-        } catch (NumberFormatException e) {
-            logger.error("Met a string that cannot be parsed to long in Condition.objects: {}", e.getMessage());
+            return stringMatcher.match(subjectValue);
+        } catch (RegexObjects.BudgetExceededException e) {
+            regexBudgetLogger.log(subject, objects);
             return false;
         }
     }
 
-    private boolean matchNumberCondition(FPUser user) {
-        NumberMatcher numberMatcher = numberMatchers.get(this.predicate);
-        if (Objects.isNull(numberMatcher)) {
-            return false;
+    private boolean matchDatetimeCondition(FPUser user, DatetimeMatcher datetimeMatcher, long[] datetimeObjects,
+                                           LongPredicate nowMatcher) {
+        long cv;
+        if (user instanceof PreparedUser) {
+            PreparedUser prepared = (PreparedUser) user;
+            Long parsed = prepared.getDatetimeAttr(attributeSlots, slot, this.subject);
+            if (Objects.isNull(parsed)) {
+                if (prepared.isUnparseableDatetimeAttr(attributeSlots, slot, this.subject)) {
+                    datetimeMismatchLogger.log(this.subject, user.getAttr(attributeSlots, slot, this.subject));
+                    return false;
+                }
+                return nowMatcher.test(System.currentTimeMillis() / MILLISECONDS_IN_ONE_SEC);
+            }
+            cv = parsed;
+        } else {
+            String customValue = user.getAttr(attributeSlots, slot, this.subject);
+            if (StringUtils.isBlank(customValue)) {
+                return nowMatcher.test(System.currentTimeMillis() / MILLISECONDS_IN_ONE_SEC);
+            }
+            try {
+                cv = Long.parseLong(customValue);
+            } catch (NumberFormatException e) {
+                datetimeMismatchLogger.log(this.subject, customValue);
+                return false;
+            }
         }
+        return datetimeMatcher.match(cv, datetimeObjects);
+    }
 
-        String customValue = user.getAttr(this.subject);
-        if (StringUtils.isBlank(customValue)) {
-            return false;
-        }
+    private boolean matchNumberCondition(FPUser user, NumberMatcher numberMatcher, double[] numberObjects) {
         double cv;
-        try {
-            cv = Double.parseDouble(customValue);
-        } catch (NumberFormatException e) {
-            logger.error("User attribute type mismatch. attribute value : {}, target type double", customValue);
-            return false;
-        }
-        try {
-            return numberMatcher.match(cv, this.objects);
-        } catch (NumberFormatException e) {
-            logger.error("Met a string that cannot be parsed to double in Condition.objects: {}", e.getMessage());
-            return false;
+        if (user instanceof PreparedUser) {
+            PreparedUser prepared = (PreparedUser) user;
+            Double parsed = prepared.getNumberAttr(attributeSlots, slot, this.subject);
+            if (Objects.isNull(parsed)) {
+                if (prepared.isUnparseableNumberAttr(attributeSlots, slot, this.subject)) {
+                    numberMismatchLogger.log(this.subject, user.getAttr(attributeSlots, slot, this.subject));
+                }
+                return false;
+            }
+            cv = parsed;
+        } else {
+            String customValue = user.getAttr(attributeSlots, slot, this.subject);
+            if (StringUtils.isBlank(customValue)) {
+                return false;
+            }
+            try {
+                cv = Double.parseDouble(customValue);
+            } catch (NumberFormatException e) {
+                numberMismatchLogger.log(this.subject, customValue);
+                return false;
+            }
         }
+        return numberMatcher.match(cv, numberObjects);
     }
 
-    private boolean matchSemverCondition(FPUser user) {
-        SemverMatcher semverMatcher = semverMatchers.get(this.predicate);
-        if (Objects.isNull(semverMatcher)) {
-            return false;
+    private boolean matchSemverCondition(FPUser user, SemverMatcher semverMatcher,
+                                         ComparableVersion[] semverObjects) {
+        ComparableVersion cv;
+        if (user instanceof PreparedUser) {
+            cv = ((PreparedUser) user).getSemverAttr(attributeSlots, slot, this.subject);
+        } else {
+            String customValue = user.getAttr(attributeSlots, slot, this.subject);
+            cv = StringUtils.isBlank(customValue) ? null : new ComparableVersion(customValue);
         }
-
-        String customValue = user.getAttr(this.subject);
-        if (StringUtils.isBlank(customValue)) {
+        if (Objects.isNull(cv)) {
             return false;
         }
-        ComparableVersion cv = new ComparableVersion(customValue);
-        return semverMatcher.match(cv, this.objects);
+        return semverMatcher.match(cv, semverObjects);
     }
 
     public ConditionType getType() {
@@ -230,6 +487,7 @@ public final class Condition {
 
     public void setType(ConditionType type) {
         this.type = type;
+        this.matcher = null;
     }
 
     public String getSubject() {
@@ -238,6 +496,9 @@ public final class Condition {
 
     public void setSubject(String subject) {
         this.subject = subject;
+        this.matcher = null;
+        this.attributeSlots = null;
+        this.slot = AttributeSlots.NO_SLOT;
     }
 
     public String getPredicate() {
@@ -246,6 +507,7 @@ public final class Condition {
 
     public void setPredicate(PredicateType predicate) {
         this.predicate = predicate;
+        this.matcher = null;
     }
 
     public List<String> getObjects() {
@@ -254,6 +516,7 @@ public final class Condition {
 
     public void setObjects(List<String> objects) {
         this.objects = objects;
+        this.matcher = null;
     }
 
 }
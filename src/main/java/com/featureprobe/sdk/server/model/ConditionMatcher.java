@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import com.featureprobe.sdk.server.FPUser;
+
+/**
+ * A condition compiled against its type, predicate and objects. Built once per repository version by
+ * {@link Condition#compile(CompileContext)}, so evaluation is a single call without table lookups or type dispatch.
+ */
+@FunctionalInterface
+interface ConditionMatcher {
+
+    ConditionMatcher NEVER = (user, context) -> false;
+
+    boolean match(FPUser user, EvaluationContext context);
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import com.featureprobe.sdk.server.EvaluationResult;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * State of one evaluation pass for one user: the toggles and segments of the repository version being evaluated,
+ * and the segment memberships and prerequisite results already computed, which are shared by all rules and
+ * prerequisite toggles of the pass. Not thread-safe, a context is created per call or borrowed for one call, see
+ * {@link #acquire(Map, Map)}.
+ */
+public final class EvaluationContext {
+
+    private static final ThreadLocal<EvaluationContext> REUSABLE =
+            ThreadLocal.withInitial(() -> new EvaluationContext(null, null));
+
+    private Map<String, Toggle> toggles;
+
+    private Map<String, Segment> segments;
+
+    private final IdentityMemo<Segment, Boolean> segmentMemberships = new IdentityMemo<>();
+
+    private final IdentityMemo<Toggle, EvaluationResult> prerequisiteResults = new IdentityMemo<>();
+
+    private final IdentityMemo<Toggle, Integer> prerequisiteVariations = new IdentityMemo<>();
+
+    private String prerequisiteFailure;
+
+    private boolean acquired;
+
+    public EvaluationContext(Map<String, Toggle> toggles, Map<String, Segment> segments) {
+        this.toggles = toggles;
+        this.segments = segments;
+    }
+
+    /**
+     * Borrows the context of the current thread, so that evaluations which allocate nothing else do not allocate a
+     * context either. Every acquired context must be {@link #release() released}; a nested acquire gets a new one.
+     */
+    static EvaluationContext acquire(Map<String, Toggle> toggles, Map<String, Segment> segments) {
+        EvaluationContext context = REUSABLE.get();
+        if (context.acquired) {
+            return new EvaluationContext(toggles, segments);
+        }
+        context.acquired = true;
+        context.toggles = toggles;
+        context.segments = segments;
+        return context;
+    }
+
+    /**
+     * Forgets the repository and memoized results, so that a reused context keeps nothing alive between calls.
+     */
+    void release() {
+        toggles = null;
+        segments = null;
+        segmentMemberships.clear();
+        prerequisiteResults.clear();
+        prerequisiteVariations.clear();
+        prerequisiteFailure = null;
+        acquired = false;
+    }
+
+    public Map<String, Toggle> getToggles() {
+        return toggles;
+    }
+
+    public Map<String, Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * The segments of one repository version are distinct instances per segment id and version, so the memo
+     * compares them by identity and a pass never sees two versions of the same segment.
+     *
+     * @return the remembered membership of the user in {@code segment}, or {@code null} if not evaluated yet
+     */
+    Boolean segmentMembership(Segment segment) {
+        return segmentMemberships.get(segment);
+    }
+
+    void rememberSegmentMembership(Segment segment, boolean contains) {
+        segmentMemberships.put(segment, contains);
+    }
+
+    /**
+     * @return the remembered result of {@code toggle} evaluated as a prerequisite, or {@code null} if not
+     * evaluated yet
+     */
+    EvaluationResult prerequisiteResult(Toggle toggle) {
+        return prerequisiteResults.get(toggle);
+    }
+
+    void rememberPrerequisiteResult(Toggle toggle, EvaluationResult result) {
+        prerequisiteResults.put(toggle, result);
+    }
+
+    /**
+     * @return the remembered variation index of {@code toggle} evaluated as a prerequisite, or {@code null} if not
+     * evaluated yet
+     */
+    Integer prerequisiteVariation(Toggle toggle) {
+        return prerequisiteVariations.get(toggle);
+    }
+
+    void rememberPrerequisiteVariation(Toggle toggle, int variationIndex) {
+        prerequisiteVariations.put(toggle, variationIndex);
+    }
+
+    /**
+     * Fails the toggle being evaluated, because one of its prerequisites, or theirs, is missing or nested too
+     * deep. The evaluation unwinds without evaluating anything else and without remembering the results it
+     * unwinds through, and the toggle reports {@code reason}, see {@link #takePrerequisiteFailure()}.
+     */
+    void failPrerequisites(String reason) {
+        prerequisiteFailure = reason;
+    }
+
+    boolean hasPrerequisiteFailure() {
+        return prerequisiteFailure != null;
+    }
+
+    /**
+     * @return the reason the toggle just evaluated failed, or {@code null} if it did not, and clears it for the
+     * next toggle of the pass
+     */
+    String takePrerequisiteFailure() {
+        String failure = prerequisiteFailure;
+        prerequisiteFailure = null;
+        return failure;
+    }
+
+    /**
+     * Entries compared by identity. The map is allocated on the first entry, as most evaluations remember nothing,
+     * and is hashed so that a batch sharing one context over every toggle of a repository stays linear.
+     */
+    private static final class IdentityMemo<K, V> {
+
+        private IdentityHashMap<K, V> entries;
+
+        V get(K key) {
+            return entries == null ? null : entries.get(key);
+        }
+
+        void put(K key, V value) {
+            if (entries == null) {
+                entries = new IdentityHashMap<>();
+            }
+            entries.put(key, value);
+        }
+
+        void clear() {
+            if (entries != null && !entries.isEmpty()) {
+                entries.clear();
+            }
+        }
+
+    }
+
+}
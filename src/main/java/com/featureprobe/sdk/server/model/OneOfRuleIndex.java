@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import com.featureprobe.sdk.server.AttributeSlots;
+import com.featureprobe.sdk.server.FPUser;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A {@link RuleIndex} on the attribute most rules compare with {@code is one of}, such as a tenant id, which maps
+ * every value to the rules listing it.
+ */
+final class OneOfRuleIndex extends RuleIndex {
+
+    private final String subject;
+
+    private final AttributeSlots attributeSlots;
+
+    private final int slot;
+
+    private final Map<String, int[]> candidates;
+
+    private final int[] otherCandidates;
+
+    private OneOfRuleIndex(int constrainedRules, String subject, AttributeSlots attributeSlots,
+                           Map<String, int[]> candidates, int[] otherCandidates) {
+        super(constrainedRules);
+        this.subject = subject;
+        this.attributeSlots = attributeSlots;
+        this.slot = Objects.isNull(attributeSlots) ? AttributeSlots.NO_SLOT : attributeSlots.slotOf(subject);
+        this.candidates = candidates;
+        this.otherCandidates = otherCandidates;
+    }
+
+    /**
+     * @return the index, or null if no attribute is compared by enough rules to be worth indexing
+     */
+    static OneOfRuleIndex of(Rule[] rules, AttributeSlots attributeSlots) {
+        Map<String, Integer> constrainedRules = new HashMap<>();
+        for (Rule rule : rules) {
+            Set<String> subjects = new HashSet<>();
+            for (Condition condition : conditions(rule)) {
+                if (isOneOf(condition)) {
+                    subjects.add(condition.getSubject());
+                }
+            }
+            subjects.forEach(subject -> constrainedRules.merge(subject, 1, Integer::sum));
+        }
+        String subject = null;
+        int constrained = 0;
+        for (Map.Entry<String, Integer> entry : constrainedRules.entrySet()) {
+            if (entry.getValue() > constrained) {
+                subject = entry.getKey();
+                constrained = entry.getValue();
+            }
+        }
+        if (constrained < MIN_INDEXED_RULES) {
+            return null;
+        }
+
+        Map<String, TreeSet<Integer>> rulesByValue = new HashMap<>();
+        TreeSet<Integer> others = new TreeSet<>();
+        for (int i = 0; i < rules.length; i++) {
+            List<String> objects = oneOfObjects(rules[i], subject);
+            if (Objects.isNull(objects)) {
+                others.add(i);
+                continue;
+            }
+            for (String object : new LinkedHashSet<>(objects)) {
+                if (Objects.nonNull(object)) {
+                    rulesByValue.computeIfAbsent(object, value -> new TreeSet<>()).add(i);
+                }
+            }
+        }
+        others.add(rules.length - 1);
+        Map<String, int[]> candidates = new HashMap<>();
+        rulesByValue.forEach((value, indexes) -> {
+            indexes.addAll(others);
+            candidates.put(value, toArray(indexes));
+        });
+        return new OneOfRuleIndex(constrained, subject, attributeSlots, candidates, toArray(others));
+    }
+
+    @Override
+    int[] candidates(FPUser user) {
+        String value = user.getAttr(attributeSlots, slot, subject);
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        int[] indexes = candidates.get(value);
+        return Objects.isNull(indexes) ? otherCandidates : indexes;
+    }
+
+    private static boolean isOneOf(Condition condition) {
+        return condition.getType() == ConditionType.STRING
+                && PredicateType.IS_ONE_OF.toValue().equals(condition.getPredicate())
+                && Objects.nonNull(condition.getSubject())
+                && Objects.nonNull(condition.getObjects());
+    }
+
+    private static List<String> oneOfObjects(Rule rule, String subject) {
+        for (Condition condition : conditions(rule)) {
+            if (isOneOf(condition) && subject.equals(condition.getSubject())) {
+                return condition.getObjects();
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Matches a string against many prefixes (or, when reversed, suffixes) in a single pass over the string, however
+ * many objects the condition has.
+ */
+final class PrefixTrie {
+
+    private final Node root;
+
+    private final boolean reversed;
+
+    private PrefixTrie(Node root, boolean reversed) {
+        this.root = root;
+        this.reversed = reversed;
+    }
+
+    static PrefixTrie ofPrefixes(List<String> objects) {
+        return new PrefixTrie(build(objects, false), false);
+    }
+
+    static PrefixTrie ofSuffixes(List<String> objects) {
+        return new PrefixTrie(build(objects, true), true);
+    }
+
+    /**
+     * @return whether {@code target} starts with (or for suffixes, ends with) any of the objects
+     */
+    boolean matchesAny(String target) {
+        Node node = root;
+        int length = target.length();
+        for (int i = 0; !node.terminal; i++) {
+            if (i == length) {
+                return false;
+            }
+            node = node.child(reversed ? target.charAt(length - 1 - i) : target.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Node build(List<String> objects, boolean reversed) {
+        Builder root = new Builder();
+        for (String object : objects) {
+            Builder node = root;
+            int length = object.length();
+            for (int i = 0; i < length; i++) {
+                char c = reversed ? object.charAt(length - 1 - i) : object.charAt(i);
+                node = node.children.computeIfAbsent(c, k -> new Builder());
+            }
+            node.terminal = true;
+        }
+        return root.build();
+    }
+
+    private static final class Builder {
+
+        final Map<Character, Builder> children = new TreeMap<>();
+
+        boolean terminal;
+
+        Node build() {
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node(keys, nodes, terminal);
+        }
+
+    }
+
+    private static final class Node {
+
+        private final char[] keys;
+
+        private final Node[] children;
+
+        private final boolean terminal;
+
+        Node(char[] keys, Node[] children, boolean terminal) {
+            this.keys = keys;
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import com.featureprobe.sdk.server.Loggers;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * The prerequisite dependencies between the toggles of one repository version. Only enabled toggles evaluate their
+ * prerequisites, so a disabled toggle has no outgoing edges. Resolving the graph visits the toggles in topological
+ * order and records on every toggle the evaluation depth it needs, or that it reaches a cycle.
+ */
+final class PrerequisiteGraph {
+
+    private static final Logger logger = Loggers.EVALUATOR;
+
+    private static final int VISITING = -1;
+
+    private final Map<String, Toggle> toggles;
+
+    private final Map<String, Integer> requiredDepths = new HashMap<>();
+
+    private final List<Frame> path = new ArrayList<>();
+
+    private PrerequisiteGraph(Map<String, Toggle> toggles) {
+        this.toggles = toggles;
+    }
+
+    static void resolve(Map<String, Toggle> toggles) {
+        PrerequisiteGraph graph = new PrerequisiteGraph(toggles);
+        toggles.forEach((key, toggle) -> {
+            graph.visit(key, toggle);
+            graph.walk();
+        });
+    }
+
+    /**
+     * Walks the prerequisites of the toggles on the path depth first. The path is an explicit stack, so a long
+     * prerequisite chain cannot overflow the thread stack.
+     */
+    private void walk() {
+        while (!path.isEmpty()) {
+            Frame frame = path.get(path.size() - 1);
+            Prerequisite prerequisite = frame.nextPrerequisite();
+            if (Objects.isNull(prerequisite)) {
+                path.remove(path.size() - 1);
+                int depth = record(frame.key, frame.toggle, frame.depth);
+                if (!path.isEmpty()) {
+                    path.get(path.size() - 1).depend(depth);
+                }
+                continue;
+            }
+            Toggle dependency = toggles.get(prerequisite.getKey());
+            if (Objects.isNull(dependency)) {
+                continue;
+            }
+            int depth = visit(prerequisite.getKey(), dependency);
+            if (depth != VISITING) {
+                frame.depend(depth);
+            }
+        }
+    }
+
+    /**
+     * @return the smallest prerequisite depth the toggle evaluates with, {@link Toggle#CYCLIC_DEPTH}, or
+     * {@link #VISITING} if its prerequisites are yet to be walked
+     */
+    private int visit(String key, Toggle toggle) {
+        Integer resolved = requiredDepths.get(key);
+        if (resolved != null) {
+            if (resolved == VISITING) {
+                logger.error("Toggle prerequisite cycle. cycle: {} -> {}", cycleFrom(key), key);
+                return Toggle.CYCLIC_DEPTH;
+            }
+            return resolved;
+        }
+        if (!Boolean.TRUE.equals(toggle.getEnabled())) {
+            return record(key, toggle, 0);
+        }
+        requiredDepths.put(key, VISITING);
+        path.add(new Frame(key, toggle));
+        return VISITING;
+    }
+
+    private String cycleFrom(String key) {
+        StringJoiner cycle = new StringJoiner(" -> ");
+        boolean inCycle = false;
+        for (Frame frame : path) {
+            inCycle = inCycle || frame.key.equals(key);
+            if (inCycle) {
+                cycle.add(frame.key);
+            }
+        }
+        return cycle.toString();
+    }
+
+    private int record(String key, Toggle toggle, int depth) {
+        requiredDepths.put(key, depth);
+        toggle.resolveRequiredDepth(depth);
+        return depth;
+    }
+
+    /**
+     * A toggle on the path, with the prerequisites walked so far and the depth they need.
+     */
+    private static final class Frame {
+
+        private final String key;
+
+        private final Toggle toggle;
+
+        private final List<Prerequisite> prerequisites;
+
+        private int next;
+
+        private int depth = 1;
+
+        private Frame(String key, Toggle toggle) {
+            this.key = key;
+            this.toggle = toggle;
+            this.prerequisites = Objects.isNull(toggle.getPrerequisites())
+                    ? Collections.emptyList() : toggle.getPrerequisites();
+        }
+
+        /**
+         * @return the next prerequisite to walk, or null once all are walked or a cycle is reached
+         */
+        private Prerequisite nextPrerequisite() {
+            if (depth == Toggle.CYCLIC_DEPTH || next >= prerequisites.size()) {
+                return null;
+            }
+            return prerequisites.get(next++);
+        }
+
+        private void depend(int dependencyDepth) {
+            depth = dependencyDepth == Toggle.CYCLIC_DEPTH
+                    ? Toggle.CYCLIC_DEPTH : Math.max(depth, dependencyDepth + 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The patterns of a regex condition, compiled once per repository version. When a step budget is set, every
+ * match may inspect at most that many characters, so a pathological pattern cannot stall the calling thread
+ * with catastrophic backtracking.
+ */
+final class RegexObjects {
+
+    private final Pattern[] patterns;
+
+    private final int stepBudget;
+
+    private RegexObjects(Pattern[] patterns, int stepBudget) {
+        this.patterns = patterns;
+        this.stepBudget = stepBudget;
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if any of the objects is not a valid pattern
+     */
+    static RegexObjects compile(List<String> objects, int stepBudget) {
+        Pattern[] patterns = new Pattern[objects.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = Pattern.compile(objects.get(i));
+        }
+        return new RegexObjects(patterns, stepBudget);
+    }
+
+    /**
+     * @throws BudgetExceededException if a match inspected more characters than the step budget allows
+     */
+    boolean anyFind(String target) {
+        for (Pattern pattern : patterns) {
+            CharSequence input = stepBudget > 0 ? new BudgetedCharSequence(target, stepBudget) : target;
+            if (pattern.matcher(input).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class BudgetExceededException extends RuntimeException {
+
+        private static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+        private BudgetExceededException() {
+            super("regex step budget exceeded", null, false, false);
+        }
+
+    }
+
+    private static final class BudgetedCharSequence implements CharSequence {
+
+        private final String value;
+
+        private int remaining;
+
+        BudgetedCharSequence(String value, int budget) {
+            this.value = value;
+            this.remaining = budget;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--remaining < 0) {
+                throw BudgetExceededException.INSTANCE;
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+
+    }
+
+}
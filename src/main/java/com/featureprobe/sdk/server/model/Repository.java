@@ -17,10 +17,19 @@
 
 package com.featureprobe.sdk.server.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.featureprobe.sdk.server.Loggers;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public final class Repository {
 
+    private static final Logger logger = Loggers.EVALUATOR;
+
     private Map<String, Toggle> toggles;
 
     private Map<String, Segment> segments;
@@ -29,6 +38,8 @@ public final class Repository {
 
     private Long version;
 
+    private List<RepositoryProblem> problems = Collections.emptyList();
+
     public Repository() {
     }
 
@@ -39,6 +50,50 @@ public final class Repository {
         this.version = version;
     }
 
+    /**
+     * Compiles every toggle and segment of this repository version with its own attribute slots, see
+     * {@link CompileContext#forVersion()} and {@link Toggle#compile(CompileContext)},
+     * quarantines the toggles with invalid data and reports their problems once, see {@link RepositoryValidator},
+     * resolves the prerequisites between the toggles, see {@link PrerequisiteGraph}, and fingerprints what every
+     * toggle depends on, see {@link ToggleDependencies}.
+     */
+    public void compile(CompileContext context) {
+        CompileContext versionContext = context.forVersion();
+        List<RepositoryProblem> failed = new ArrayList<>();
+        segments.forEach((key, segment) -> {
+            try {
+                segment.compile(versionContext);
+            } catch (RuntimeException e) {
+                logger.error("Segment compile error. segment: {}", key, e);
+                failed.add(new RepositoryProblem(RepositoryProblem.Kind.COMPILE_ERROR, null, key, e.toString()));
+            }
+        });
+        toggles.forEach((key, toggle) -> {
+            try {
+                toggle.compile(versionContext);
+            } catch (RuntimeException e) {
+                logger.error("Toggle compile error. toggleKey: {}", key, e);
+                failed.add(new RepositoryProblem(RepositoryProblem.Kind.COMPILE_ERROR, key, null, e.toString()));
+            }
+        });
+        List<RepositoryProblem> problems = RepositoryValidator.validate(toggles, segments, failed);
+        if (!problems.isEmpty()) {
+            logger.error("Repository version {} has invalid data, the toggles with problems serve the default "
+                    + "value: {}", version, problems);
+        }
+        this.problems = Collections.unmodifiableList(problems);
+        PrerequisiteGraph.resolve(toggles);
+        ToggleDependencies.resolve(toggles, segments);
+    }
+
+    /**
+     * @return the problems found when this version was compiled, see {@link #compile(CompileContext)}
+     */
+    @JsonIgnore
+    public List<RepositoryProblem> getProblems() {
+        return problems;
+    }
+
     public Map<String, Toggle> getToggles() {
         return toggles;
     }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import java.util.Objects;
+
+/**
+ * Invalid data found in a toggle or segment when a repository version is loaded, see
+ * {@link Repository#compile(CompileContext)}. A toggle with a problem, or one that refers to a segment with a
+ * problem, is quarantined, see {@link Toggle#quarantineReason()}.
+ */
+public final class RepositoryProblem {
+
+    public enum Kind {
+        /**
+         * A segment condition refers to a segment id that is not in the repository.
+         */
+        UNKNOWN_SEGMENT,
+        /**
+         * A segment condition refers to a segment that has a problem itself.
+         */
+        INVALID_SEGMENT,
+        INVALID_REGEX,
+        INVALID_NUMBER,
+        INVALID_DATETIME,
+        /**
+         * A toggle has no variations, or a serve selects a variation it does not have.
+         */
+        INVALID_VARIATION_INDEX,
+        /**
+         * A split has no distribution, or a range that is not a pair of bucket bounds.
+         */
+        INVALID_DISTRIBUTION,
+        MISSING_SERVE,
+        /**
+         * A toggle or segment failed to compile, for instance because a list it needs is missing.
+         */
+        COMPILE_ERROR
+    }
+
+    private final Kind kind;
+
+    private final String toggleKey;
+
+    private final String segmentId;
+
+    private final String detail;
+
+    RepositoryProblem(Kind kind, String toggleKey, String segmentId, String detail) {
+        this.kind = kind;
+        this.toggleKey = toggleKey;
+        this.segmentId = segmentId;
+        this.detail = detail;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the key of the toggle with the problem, or null if the problem is in a segment
+     */
+    public String getToggleKey() {
+        return toggleKey;
+    }
+
+    /**
+     * @return the id of the segment with the problem, or null if the problem is in a toggle
+     */
+    public String getSegmentId() {
+        return segmentId;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        return kind + (Objects.nonNull(toggleKey) ? " in toggle " + toggleKey : " in segment " + segmentId)
+                + ": " + detail;
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Checks a compiled repository version for data that would fail or never match at evaluation, and quarantines the
+ * toggles that have any, see {@link Toggle#quarantine(RepositoryProblem)}, so that broken data is reported once
+ * per version instead of on every evaluation.
+ */
+final class RepositoryValidator {
+
+    private RepositoryValidator() {
+    }
+
+    /**
+     * @param failed the toggles and segments that failed to compile, which are reported and quarantined as they
+     *               are
+     * @return the problems of the segments, then of the toggles
+     */
+    static List<RepositoryProblem> validate(Map<String, Toggle> toggles, Map<String, Segment> segments,
+                                            List<RepositoryProblem> failed) {
+        List<RepositoryProblem> problems = new ArrayList<>();
+        Set<String> invalidSegments = new HashSet<>();
+        Set<String> failedToggles = new HashSet<>();
+        for (RepositoryProblem problem : failed) {
+            if (Objects.nonNull(problem.getSegmentId())) {
+                invalidSegments.add(problem.getSegmentId());
+                problems.add(problem);
+            } else {
+                failedToggles.add(problem.getToggleKey());
+            }
+        }
+        Set<String> brokenSegments = new HashSet<>();
+        Map<String, List<String>> referrers = new HashMap<>();
+        segments.forEach((id, segment) -> {
+            if (invalidSegments.contains(id) || Objects.isNull(segment.getRules())) {
+                return;
+            }
+            int before = problems.size();
+            for (SegmentRule rule : segment.getRules()) {
+                if (Objects.nonNull(rule) && Objects.nonNull(rule.getConditions())) {
+                    for (Condition condition : rule.getConditions()) {
+                        checkCondition(condition, null, id, segments, Collections.emptySet(), problems);
+                        if (Objects.nonNull(condition) && condition.getType() == ConditionType.SEGMENT
+                                && Objects.nonNull(condition.getObjects())) {
+                            for (String referenced : condition.getObjects()) {
+                                referrers.computeIfAbsent(referenced, r -> new ArrayList<>()).add(id);
+                            }
+                        }
+                    }
+                }
+            }
+            if (problems.size() > before) {
+                brokenSegments.add(id);
+            }
+        });
+        invalidSegments.addAll(brokenSegments);
+        invalidateReferrers(invalidSegments, referrers, problems);
+        for (RepositoryProblem problem : failed) {
+            if (Objects.nonNull(problem.getToggleKey())) {
+                problems.add(problem);
+                toggles.get(problem.getToggleKey()).quarantine(problem);
+            }
+        }
+        toggles.forEach((key, toggle) -> {
+            if (failedToggles.contains(key)) {
+                return;
+            }
+            int before = problems.size();
+            checkToggle(key, toggle, segments, invalidSegments, problems);
+            if (problems.size() > before) {
+                toggle.quarantine(problems.get(before));
+            }
+        });
+        return problems;
+    }
+
+    /**
+     * Marks every segment that references an invalid segment, directly or through other segments, as invalid
+     * too, whatever the order the segments are checked in.
+     */
+    private static void invalidateReferrers(Set<String> invalidSegments, Map<String, List<String>> referrers,
+                                            List<RepositoryProblem> problems) {
+        Deque<String> pending = new ArrayDeque<>(invalidSegments);
+        while (!pending.isEmpty()) {
+            String invalid = pending.pop();
+            for (String referrer : referrers.getOrDefault(invalid, Collections.emptyList())) {
+                if (invalidSegments.add(referrer)) {
+                    problems.add(new RepositoryProblem(RepositoryProblem.Kind.INVALID_SEGMENT, null, referrer,
+                            "segment id: " + invalid));
+                    pending.push(referrer);
+                }
+            }
+        }
+    }
+
+    /**
+     * A disabled toggle only serves its disabled serve, so its rules and default serve are not checked, and a
+     * broken rule does not make it serve the default value instead.
+     */
+    private static void checkToggle(String key, Toggle toggle, Map<String, Segment> segments,
+                                    Set<String> invalidSegments, List<RepositoryProblem> problems) {
+        int variations = Objects.isNull(toggle.getVariations()) ? 0 : toggle.getVariations().size();
+        if (variations == 0) {
+            problems.add(new RepositoryProblem(RepositoryProblem.Kind.INVALID_VARIATION_INDEX, key, null,
+                    "no variations"));
+        }
+        checkServe(toggle.getDisabledServe(), "disabled serve", key, variations, problems);
+        if (Boolean.FALSE.equals(toggle.getEnabled())) {
+            return;
+        }
+        checkServe(toggle.getDefaultServe(), "default serve", key, variations, problems);
+        if (Objects.isNull(toggle.getRules())) {
+            return;
+        }
+        for (int i = 0; i < toggle.getRules().size(); i++) {
+            Rule rule = toggle.getRules().get(i);
+            if (Objects.isNull(rule)) {
+                problems.add(new RepositoryProblem(RepositoryProblem.Kind.MISSING_SERVE, key, null,
+                        "rule " + i + " is null"));
+                continue;
+            }
+            checkServe(rule.getServe(), "rule " + i, key, variations, problems);
+            if (Objects.nonNull(rule.getConditions())) {
+                for (Condition condition : rule.getConditions()) {
+                    checkCondition(condition, key, null, segments, invalidSegments, problems);
+                }
+            }
+        }
+    }
+
+    private static void checkServe(Serve serve, String name, String toggleKey, int variations,
+                                   List<RepositoryProblem> problems) {
+        if (Objects.isNull(serve) || (Objects.isNull(serve.getSelect()) && Objects.isNull(serve.getSplit()))) {
+            problems.add(new RepositoryProblem(RepositoryProblem.Kind.MISSING_SERVE, toggleKey, null,
+                    name + " selects neither a variation nor a split"));
+            return;
+        }
+        if (Objects.nonNull(serve.getSelect())) {
+            if (serve.getSelect() < 0 || serve.getSelect() >= variations) {
+                problems.add(new RepositoryProblem(RepositoryProblem.Kind.INVALID_VARIATION_INDEX, toggleKey,
+                        null, name + " selects variation " + serve.getSelect() + " of " + variations));
+            }
+            return;
+        }
+        List<List<List<Integer>>> distribution = serve.getSplit().getDistribution();
+        if (Objects.isNull(distribution)) {
+            problems.add(new RepositoryProblem(RepositoryProblem.Kind.INVALID_DISTRIBUTION, toggleKey, null,
+                    name + " has no distribution"));
+            return;
+        }
+        for (int group = 0; group < distribution.size(); group++) {
+            List<List<Integer>> ranges = distribution.get(group);
+            if (Objects.isNull(ranges)) {
+                continue;
+            }
+            for (List<Integer> range : ranges) {
+                if (Objects.isNull(range) || range.size() < 2 || Objects.isNull(range.get(0))
+                        || Objects.isNull(range.get(1))) {
+                    problems.add(new RepositoryProblem(RepositoryProblem.Kind.INVALID_DISTRIBUTION, toggleKey, null,
+                            name + " has the invalid range " + range));
+                    return;
+                }
+                if (group >= variations && range.get(0) < range.get(1)) {
+                    problems.add(new RepositoryProblem(RepositoryProblem.Kind.INVALID_VARIATION_INDEX, toggleKey,
+                            null, name + " splits to variation " + group + " of " + variations));
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void checkCondition(Condition condition, String toggleKey, String segmentId,
+                                       Map<String, Segment> segments, Set<String> invalidSegments,
+                                       List<RepositoryProblem> problems) {
+        if (Objects.isNull(condition)) {
+            return;
+        }
+        if (Objects.nonNull(condition.problem())) {
+            problems.add(new RepositoryProblem(condition.problem(), toggleKey, segmentId,
+                    "subject: " + condition.getSubject() + ", predicate: " + condition.getPredicate()
+                            + ", objects: " + condition.getObjects()));
+        }
+        if (condition.getType() != ConditionType.SEGMENT) {
+            return;
+        }
+        if (Objects.isNull(condition.getObjects())) {
+            problems.add(new RepositoryProblem(RepositoryProblem.Kind.UNKNOWN_SEGMENT, toggleKey, segmentId,
+                    "no segment ids"));
+            return;
+        }
+        for (String id : condition.getObjects()) {
+            if (!segments.containsKey(id)) {
+                problems.add(new RepositoryProblem(RepositoryProblem.Kind.UNKNOWN_SEGMENT, toggleKey, segmentId,
+                        "segment id: " + id));
+            } else if (invalidSegments.contains(id) && !id.equals(segmentId)) {
+                problems.add(new RepositoryProblem(RepositoryProblem.Kind.INVALID_SEGMENT, toggleKey, segmentId,
+                        "segment id: " + id));
+            }
+        }
+    }
+
+}
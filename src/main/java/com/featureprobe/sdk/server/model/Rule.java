@@ -19,7 +19,9 @@ package com.featureprobe.sdk.server.model;
 
 import com.featureprobe.sdk.server.FPUser;
 import com.featureprobe.sdk.server.HitResult;
+import com.featureprobe.sdk.server.ReasonCode;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,23 +32,82 @@ public final class Rule {
 
     private List<Condition> conditions;
 
+    private Condition[] compiledConditions;
+
+    private static final int MATCHED = -1;
+
+    private static final int NOT_MATCHED = -2;
+
     public HitResult hit(FPUser user, Map<String, Segment> segments, String toggleKey) {
+        return hit(user, new EvaluationContext(Collections.emptyMap(), segments), toggleKey);
+    }
+
+    public HitResult hit(FPUser user, EvaluationContext context, String toggleKey) {
         if (user == null || toggleKey == null || toggleKey.isEmpty()) {
-            return new HitResult(false);
+            return HitResult.MISS;
         }
-        for (Condition condition : conditions) {
+        int match = matchConditions(user, context);
+        if (match == NOT_MATCHED) {
+            return HitResult.MISS;
+        }
+        if (match != MATCHED) {
+            return new HitResult(false, Optional.empty(), ReasonCode.MISSING_ATTRIBUTE, user.getKey(),
+                    compiledConditions[match].getSubject());
+        }
+        return serve.evalIndex(user, toggleKey);
+    }
+
+    /**
+     * Like {@link #hit(FPUser, EvaluationContext, String)} without building a result.
+     *
+     * @return the selected variation index, or {@link Toggle#NO_VARIATION} if the rule is not hit
+     */
+    int hitVariation(FPUser user, EvaluationContext context, String toggleKey) {
+        if (user == null || toggleKey == null || toggleKey.isEmpty()
+                || matchConditions(user, context) != MATCHED) {
+            return Toggle.NO_VARIATION;
+        }
+        return serve.variationIndex(user, toggleKey);
+    }
+
+    /**
+     * @return {@link #MATCHED}, {@link #NOT_MATCHED}, or the index of the first condition whose attribute the user
+     * does not have
+     */
+    private int matchConditions(FPUser user, EvaluationContext context) {
+        Condition[] conditions = this.compiledConditions;
+        if (conditions == null) {
+            conditions = compileConditions();
+        }
+        for (int i = 0; i < conditions.length; i++) {
+            Condition condition = conditions[i];
             if (condition.getType() != ConditionType.SEGMENT
                     && condition.getType() != ConditionType.DATETIME
-                    && !user.containAttr(condition.getSubject())) {
-                return new HitResult(false,
-                        Optional.of(String.format("Warning: User with key '%s' does not have attribute name '%s'",
-                                user.getKey(), condition.getSubject())));
+                    && !condition.hasAttribute(user)) {
+                return i;
             }
-            if (!condition.matchObjects(user, segments)) {
-                return new HitResult(false);
+            if (!condition.matchObjects(user, context)) {
+                return NOT_MATCHED;
             }
         }
-        return serve.evalIndex(user, toggleKey);
+        return MATCHED;
+    }
+
+    /**
+     * Compiles the conditions and serve of this rule, see {@link Condition#compile(CompileContext)}.
+     */
+    public void compile(CompileContext context) {
+        for (Condition condition : conditions) {
+            condition.compile(context);
+        }
+        serve.compile(context);
+        this.compiledConditions = compileConditions();
+    }
+
+    private Condition[] compileConditions() {
+        Condition[] compiled = conditions.toArray(new Condition[0]);
+        this.compiledConditions = compiled;
+        return compiled;
     }
 
     public Rule() {
@@ -71,6 +132,7 @@ public final class Rule {
 
     public void setConditions(List<Condition> conditions) {
         this.conditions = conditions;
+        this.compiledConditions = null;
     }
 
 }
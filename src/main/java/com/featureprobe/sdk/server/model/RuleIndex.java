@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import com.featureprobe.sdk.server.AttributeSlots;
+import com.featureprobe.sdk.server.FPUser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Dispatches the rules of a toggle on one attribute that most of them constrain, so that evaluation only tries the
+ * rules that can match the user's value, still in rule order. A rule that does not constrain the attribute is a
+ * candidate for every value. The last rule is always a candidate too, since its miss is the one the default rule
+ * reports, unless an earlier candidate is sure to hit.
+ */
+abstract class RuleIndex {
+
+    /**
+     * Toggles with fewer rules on one attribute are scanned in order, which is as fast.
+     */
+    static final int MIN_INDEXED_RULES = 8;
+
+    private final int constrainedRules;
+
+    RuleIndex(int constrainedRules) {
+        this.constrainedRules = constrainedRules;
+    }
+
+    /**
+     * @return the index on the attribute that constrains the most rules, see {@link OneOfRuleIndex} and
+     * {@link ThresholdRuleIndex}, or null if no attribute constrains enough rules to be worth indexing
+     */
+    static RuleIndex of(Rule[] rules, AttributeSlots attributeSlots) {
+        if (rules.length < MIN_INDEXED_RULES) {
+            return null;
+        }
+        RuleIndex oneOf = OneOfRuleIndex.of(rules, attributeSlots);
+        RuleIndex threshold = ThresholdRuleIndex.of(rules, attributeSlots);
+        if (Objects.isNull(oneOf)) {
+            return threshold;
+        }
+        if (Objects.isNull(threshold)) {
+            return oneOf;
+        }
+        return threshold.constrainedRules > oneOf.constrainedRules ? threshold : oneOf;
+    }
+
+    /**
+     * @return the indexes of the rules that can match the user, in rule order, or null if every rule has to be
+     * tried because the user has no usable value for the indexed attribute
+     */
+    abstract int[] candidates(FPUser user);
+
+    static List<Condition> conditions(Rule rule) {
+        return Objects.isNull(rule.getConditions()) ? Collections.<Condition>emptyList() : rule.getConditions();
+    }
+
+    static int[] toArray(Set<Integer> indexes) {
+        return indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+}
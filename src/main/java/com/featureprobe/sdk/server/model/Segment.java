@@ -20,6 +20,7 @@ package com.featureprobe.sdk.server.model;
 import com.featureprobe.sdk.server.FPUser;
 import com.featureprobe.sdk.server.HitResult;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -31,9 +32,33 @@ public class Segment {
 
     private List<SegmentRule> rules;
 
+    private SegmentRule[] compiledRules;
+
     public boolean contains(FPUser user, Map<String, Segment> segments) {
+        return contains(user, new EvaluationContext(Collections.emptyMap(), segments));
+    }
+
+    /**
+     * Evaluates the rules of this segment at most once per evaluation pass, the result is remembered in
+     * {@code context} for every later condition or prerequisite referring to this segment.
+     */
+    public boolean contains(FPUser user, EvaluationContext context) {
+        Boolean memo = context.segmentMembership(this);
+        if (memo != null) {
+            return memo;
+        }
+        boolean contains = matchRules(user, context);
+        context.rememberSegmentMembership(this, contains);
+        return contains;
+    }
+
+    private boolean matchRules(FPUser user, EvaluationContext context) {
+        SegmentRule[] rules = this.compiledRules;
+        if (rules == null) {
+            rules = compileRules();
+        }
         for (SegmentRule rule : rules) {
-            HitResult hitResult = rule.hit(user, segments);
+            HitResult hitResult = rule.hit(user, context);
             if (hitResult.isHit()) {
                 return true;
             }
@@ -41,6 +66,22 @@ public class Segment {
         return false;
     }
 
+    /**
+     * Compiles the rules of this segment, see {@link Condition#compile(CompileContext)}.
+     */
+    public void compile(CompileContext context) {
+        for (SegmentRule rule : rules) {
+            rule.compile(context);
+        }
+        this.compiledRules = compileRules();
+    }
+
+    private SegmentRule[] compileRules() {
+        SegmentRule[] compiled = rules.toArray(new SegmentRule[0]);
+        this.compiledRules = compiled;
+        return compiled;
+    }
+
     public String getUniqueId() {
         return uniqueId;
     }
@@ -63,6 +104,7 @@ public class Segment {
 
     public void setRules(List<SegmentRule> rules) {
         this.rules = rules;
+        this.compiledRules = null;
     }
 
 }
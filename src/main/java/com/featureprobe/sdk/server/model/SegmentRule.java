@@ -19,7 +19,9 @@ package com.featureprobe.sdk.server.model;
 
 import com.featureprobe.sdk.server.FPUser;
 import com.featureprobe.sdk.server.HitResult;
+import com.featureprobe.sdk.server.ReasonCode;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -28,6 +30,8 @@ public class SegmentRule {
 
     private List<Condition> conditions;
 
+    private Condition[] compiledConditions;
+
     public SegmentRule() {
     }
 
@@ -36,17 +40,40 @@ public class SegmentRule {
     }
 
     public HitResult hit(FPUser user, Map<String, Segment> segments) {
+        return hit(user, new EvaluationContext(Collections.emptyMap(), segments));
+    }
+
+    public HitResult hit(FPUser user, EvaluationContext context) {
+        Condition[] conditions = this.compiledConditions;
+        if (conditions == null) {
+            conditions = compileConditions();
+        }
         for (Condition condition : conditions) {
-            if (condition.getType() != ConditionType.SEGMENT && !user.containAttr(condition.getSubject())) {
-                return new HitResult(false,
-                        Optional.of(String.format("Warning: User with key '%s' does not have attribute name '%s'",
-                                user.getKey(), condition.getSubject())));
+            if (condition.getType() != ConditionType.SEGMENT && !condition.hasAttribute(user)) {
+                return new HitResult(false, Optional.empty(), ReasonCode.MISSING_ATTRIBUTE, user.getKey(),
+                        condition.getSubject());
             }
-            if (!condition.matchObjects(user, segments)) {
-                return new HitResult(false);
+            if (!condition.matchObjects(user, context)) {
+                return HitResult.MISS;
             }
         }
-        return new HitResult(true);
+        return HitResult.HIT;
+    }
+
+    /**
+     * Compiles the conditions of this rule, see {@link Condition#compile(CompileContext)}.
+     */
+    public void compile(CompileContext context) {
+        for (Condition condition : conditions) {
+            condition.compile(context);
+        }
+        this.compiledConditions = compileConditions();
+    }
+
+    private Condition[] compileConditions() {
+        Condition[] compiled = conditions.toArray(new Condition[0]);
+        this.compiledConditions = compiled;
+        return compiled;
     }
 
     public List<Condition> getConditions() {
@@ -55,6 +82,7 @@ public class SegmentRule {
 
     public void setConditions(List<Condition> conditions) {
         this.conditions = conditions;
+        this.compiledConditions = null;
     }
 
 }
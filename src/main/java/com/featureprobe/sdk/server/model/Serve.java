@@ -31,6 +31,8 @@ public final class Serve {
 
     private Split split;
 
+    private HitResult selectResult;
+
     public Serve() {
     }
 
@@ -44,17 +46,49 @@ public final class Serve {
 
     public HitResult evalIndex(FPUser user, String toggleKey) {
         if (Objects.nonNull(select)) {
-            return new HitResult(true, Optional.of(select), Optional.empty());
+            HitResult result = this.selectResult;
+            if (result == null) {
+                result = new HitResult(true, Optional.of(select), Optional.empty());
+                this.selectResult = result;
+            }
+            return result;
         }
         return split.findIndex(user, toggleKey);
     }
 
+    /**
+     * Like {@link #evalIndex(FPUser, String)} without building a result.
+     *
+     * @return the selected variation index, or {@link Toggle#NO_VARIATION} if the split cannot bucket the user or
+     * selects no group, which is a miss like in {@link #evalIndex(FPUser, String)}
+     */
+    int variationIndex(FPUser user, String toggleKey) {
+        if (Objects.nonNull(select)) {
+            return select;
+        }
+        int group = split.findGroup(user, toggleKey);
+        return group < 0 ? Toggle.NO_VARIATION : group;
+    }
+
+    /**
+     * Pre-builds the result of a fixed {@code select} serve, which is immutable and shared by all evaluations, or
+     * the bucket table of a split, see {@link Split#compile(CompileContext)}.
+     */
+    public void compile(CompileContext context) {
+        if (Objects.nonNull(select)) {
+            this.selectResult = new HitResult(true, Optional.of(select), Optional.empty());
+        } else if (Objects.nonNull(split)) {
+            split.compile(context);
+        }
+    }
+
     public Integer getSelect() {
         return select;
     }
 
     public void setSelect(Integer select) {
         this.select = select;
+        this.selectResult = null;
     }
 
     public Split getSplit() {
@@ -18,22 +18,26 @@
 package com.featureprobe.sdk.server.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.featureprobe.sdk.server.AttributeSlots;
 import com.featureprobe.sdk.server.FPUser;
 import com.featureprobe.sdk.server.HitResult;
+import com.featureprobe.sdk.server.Loggers;
+import com.featureprobe.sdk.server.ReasonCode;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
 
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Split {
 
+    private static final Logger logger = Loggers.EVALUATOR;
+
     private static final int BUCKET_SIZE = 10000;
 
     private static final int INVALID_INDEX = -1;
@@ -44,6 +48,14 @@ public class Split {
 
     private String salt;
 
+    private EncodedSalt encodedSalt;
+
+    private BucketTable bucketTable;
+
+    private AttributeSlots attributeSlots;
+
+    private int bucketBySlot = AttributeSlots.NO_SLOT;
+
     public Split() {
     }
 
@@ -52,47 +64,75 @@ public class Split {
     }
 
     public HitResult findIndex(FPUser user, String toggleKey) {
-        String hashKey = user.getKey();
-        if (StringUtils.isNotBlank(bucketBy)) {
-            if (user.containAttr(bucketBy)) {
-                hashKey = user.getAttr(bucketBy);
-            } else {
-                return new HitResult(false,
-                        Optional.of(String.format("Warning: User with key '%s' does not have attribute name '%s'",
-                                user.getKey(), bucketBy)));
-            }
+        if (StringUtils.isNotBlank(bucketBy) && !user.containAttr(attributeSlots, bucketBySlot, bucketBy)) {
+            return new HitResult(false, Optional.empty(), ReasonCode.MISSING_ATTRIBUTE, user.getKey(), bucketBy);
+        }
+        HitResult result = getBucketTable().result(hash(getHashKey(user), getHashSalt(toggleKey), BUCKET_SIZE));
+        if (Objects.isNull(result)) {
+            return new HitResult(false, Optional.empty(), ReasonCode.NO_PERCENTAGE_GROUP, user.getKey(), null);
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #findIndex(FPUser, String)} without building a result.
+     *
+     * @return the selected group, or {@link Toggle#NO_VARIATION} if the user lacks the {@code bucketBy} attribute
+     * or is in a bucket no group lists
+     */
+    int findGroup(FPUser user, String toggleKey) {
+        if (StringUtils.isNotBlank(bucketBy) && !user.containAttr(attributeSlots, bucketBySlot, bucketBy)) {
+            return Toggle.NO_VARIATION;
+        }
+        int group = getGroup(hash(getHashKey(user), getHashSalt(toggleKey), BUCKET_SIZE));
+        return group == INVALID_INDEX ? Toggle.NO_VARIATION : group;
+    }
+
+    private String getHashKey(FPUser user) {
+        return StringUtils.isNotBlank(bucketBy) ? user.getAttr(attributeSlots, bucketBySlot, bucketBy) : user.getKey();
+    }
+
+    /**
+     * Flattens the distribution into a bucket lookup table and validates that its ranges cover the bucket space
+     * exactly once. Called when a repository version is loaded; a distribution with gaps or overlaps is still used
+     * as before, a user in an unassigned bucket misses the split and overlapping buckets select the first group
+     * listing them.
+     * Also assigns the {@code bucketBy} attribute its {@link AttributeSlots slot} in the version being compiled.
+     */
+    public void compile(CompileContext context) {
+        BucketTable table = BucketTable.of(distribution);
+        if (table.unassigned > 0 || table.overlapping > 0) {
+            logger.warn("Split distribution does not cover the bucket space exactly once. "
+                    + "unassigned buckets: {}, overlapping buckets: {}", table.unassigned, table.overlapping);
         }
-        int groupIndex = getGroup(hash(hashKey, getHashSalt(toggleKey), BUCKET_SIZE));
-        return new HitResult(true, Optional.of(groupIndex),
-                Optional.of(String.format("selected %d percentage group", groupIndex)));
+        this.bucketTable = table;
+        AttributeSlots attributeSlots = context.getAttributeSlots();
+        this.attributeSlots = attributeSlots;
+        this.bucketBySlot = StringUtils.isNotBlank(bucketBy) && Objects.nonNull(attributeSlots)
+                ? attributeSlots.slotOf(bucketBy) : AttributeSlots.NO_SLOT;
     }
 
     @VisibleForTesting
     private int getGroup(int hashValue) {
-        for (int i = 0; i < distribution.size(); i++) {
-            List<List<Integer>> groups = distribution.get(i);
-            for (List<Integer> range : groups) {
-                if (hashValue >= range.get(0) && hashValue < range.get(1)) {
-                    return i;
-                }
-            }
+        return getBucketTable().group(hashValue);
+    }
+
+    private BucketTable getBucketTable() {
+        BucketTable table = this.bucketTable;
+        if (table == null) {
+            table = BucketTable.of(distribution);
+            this.bucketTable = table;
         }
-        return INVALID_INDEX;
+        return table;
     }
 
     private int hash(String hashKey, String hashSalt, int bucketSize) {
-        String value = hashKey + hashSalt;
-        byte[] hashValue;
-        MessageDigest messageDigest;
-        try {
-            messageDigest = MessageDigest.getInstance("SHA-1");
-            messageDigest.update(value.getBytes(StandardCharsets.UTF_8));
-            hashValue = messageDigest.digest();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("couldn't clone MessageDigest object", e);
+        EncodedSalt encoded = this.encodedSalt;
+        if (encoded == null || !encoded.salt.equals(hashSalt)) {
+            encoded = new EncodedSalt(hashSalt);
+            this.encodedSalt = encoded;
         }
-        byte[] bytes = Arrays.copyOfRange(hashValue, hashValue.length - 4, hashValue.length);
-        return new BigInteger(1, bytes).mod(BigInteger.valueOf(bucketSize)).intValue();
+        return BucketHasher.bucket(hashKey, hashSalt, encoded.bytes, bucketSize);
     }
 
     private String getHashSalt(String toggleKey) {
@@ -108,6 +148,7 @@ public class Split {
 
     public void setDistribution(List<List<List<Integer>>> distribution) {
         this.distribution = distribution;
+        this.bucketTable = null;
     }
 
     public String getBucketBy() {
@@ -116,6 +157,8 @@ public class Split {
 
     public void setBucketBy(String bucketBy) {
         this.bucketBy = bucketBy;
+        this.attributeSlots = null;
+        this.bucketBySlot = AttributeSlots.NO_SLOT;
     }
 
     public String getSalt() {
@@ -126,4 +169,116 @@ public class Split {
         this.salt = salt;
     }
 
+    /**
+     * Buckets {@code [0, BUCKET_SIZE)} as runs of consecutive buckets selecting the same group: {@code starts} holds
+     * the first bucket of every run in ascending order, beginning with 0, and {@code results} the result of each
+     * run, shared by all runs of a group, or null for the runs of unassigned buckets.
+     */
+    private static final class BucketTable {
+
+        private final int[] starts;
+
+        private final int[] groups;
+
+        private final HitResult[] results;
+
+        private final int unassigned;
+
+        private final int overlapping;
+
+        private BucketTable(int[] starts, int[] groups, HitResult[] results, int unassigned, int overlapping) {
+            this.starts = starts;
+            this.groups = groups;
+            this.results = results;
+            this.unassigned = unassigned;
+            this.overlapping = overlapping;
+        }
+
+        static BucketTable of(List<List<List<Integer>>> distribution) {
+            int[] owners = new int[BUCKET_SIZE];
+            Arrays.fill(owners, INVALID_INDEX);
+            int overlapping = 0;
+            for (int group = 0; group < distribution.size(); group++) {
+                for (List<Integer> range : distribution.get(group)) {
+                    if (range == null || range.size() < 2 || range.get(0) == null || range.get(1) == null) {
+                        throw new IllegalArgumentException("Invalid split range: " + range);
+                    }
+                    int from = Math.max(0, range.get(0));
+                    int to = Math.min(BUCKET_SIZE, range.get(1));
+                    for (int bucket = from; bucket < to; bucket++) {
+                        if (owners[bucket] == INVALID_INDEX) {
+                            owners[bucket] = group;
+                        } else {
+                            overlapping++;
+                        }
+                    }
+                }
+            }
+            int unassigned = 0;
+            int runs = 0;
+            for (int bucket = 0; bucket < BUCKET_SIZE; bucket++) {
+                if (owners[bucket] == INVALID_INDEX) {
+                    unassigned++;
+                }
+                if (bucket == 0 || owners[bucket] != owners[bucket - 1]) {
+                    runs++;
+                }
+            }
+            HitResult[] groupResults = new HitResult[distribution.size()];
+            for (int group = 0; group < groupResults.length; group++) {
+                groupResults[group] = groupResult(group);
+            }
+            int[] starts = new int[runs];
+            int[] groups = new int[runs];
+            HitResult[] results = new HitResult[runs];
+            int run = -1;
+            for (int bucket = 0; bucket < BUCKET_SIZE; bucket++) {
+                if (bucket == 0 || owners[bucket] != owners[bucket - 1]) {
+                    run++;
+                    starts[run] = bucket;
+                    groups[run] = owners[bucket];
+                    results[run] = owners[bucket] == INVALID_INDEX ? null : groupResults[owners[bucket]];
+                }
+            }
+            return new BucketTable(starts, groups, results, unassigned, overlapping);
+        }
+
+        private static HitResult groupResult(int group) {
+            return new HitResult(true, Optional.of(group), ReasonCode.PERCENTAGE_GROUP, group, null);
+        }
+
+        HitResult result(int bucket) {
+            if (bucket < 0 || bucket >= BUCKET_SIZE) {
+                return null;
+            }
+            return results[run(bucket)];
+        }
+
+        int group(int bucket) {
+            if (bucket < 0 || bucket >= BUCKET_SIZE) {
+                return INVALID_INDEX;
+            }
+            return groups[run(bucket)];
+        }
+
+        private int run(int bucket) {
+            int run = Arrays.binarySearch(starts, bucket);
+            return run >= 0 ? run : -run - 2;
+        }
+
+    }
+
+    private static final class EncodedSalt {
+
+        private final String salt;
+
+        private final byte[] bytes;
+
+        EncodedSalt(String salt) {
+            this.salt = salt;
+            this.bytes = salt.getBytes(StandardCharsets.UTF_8);
+        }
+
+    }
+
 }
@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import com.featureprobe.sdk.server.AttributeSlots;
+import com.featureprobe.sdk.server.FPUser;
+import com.featureprobe.sdk.server.PreparedUser;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * A {@link RuleIndex} on the number, semver or datetime attribute most rules compare with thresholds, such as an
+ * app version ladder or an account age. The thresholds of those rules split the values into ordered ranges, each
+ * threshold itself and the open ranges between them, and every comparison is either true or false across a whole
+ * range. The candidate rules are resolved per range in one sweep over the sorted thresholds when the rules are
+ * compiled, and evaluation finds the range of the user's value with a binary search.
+ */
+final class ThresholdRuleIndex<T> extends RuleIndex {
+
+    /**
+     * Caps the candidate lists at this many entries per rule, so that rules whose ranges mostly overlap, and which
+     * an index hardly narrows, are scanned in order rather than indexed in quadratic memory.
+     */
+    private static final int MAX_CANDIDATES_PER_RULE = 16;
+
+    private static final Map<ConditionType, Kind<?>> kinds = new EnumMap<>(ConditionType.class);
+
+    static {
+        Map<PredicateType, IntPredicate> ordered = new EnumMap<>(PredicateType.class);
+        ordered.put(PredicateType.EQUAL_TO, c -> c == 0);
+        ordered.put(PredicateType.GREATER_THAN, c -> c > 0);
+        ordered.put(PredicateType.GREATER_OR_EQUAL, c -> c >= 0);
+        ordered.put(PredicateType.LESS_THAN, c -> c < 0);
+        ordered.put(PredicateType.LESS_OR_EQUAL, c -> c <= 0);
+        Map<PredicateType, IntPredicate> datetime = new EnumMap<>(PredicateType.class);
+        datetime.put(PredicateType.AFTER, c -> c >= 0);
+        datetime.put(PredicateType.BEFORE, c -> c < 0);
+
+        kinds.put(ConditionType.NUMBER, new Kind<Double>(ordered, true, false,
+                object -> {
+                    double parsed = Double.parseDouble(Objects.requireNonNull(object));
+                    if (Double.isNaN(parsed)) {
+                        throw new NumberFormatException("NaN");
+                    }
+                    return parsed;
+                },
+                (a, b) -> a < b ? -1 : (a > b ? 1 : 0),
+                (attributeSlots, slot, subject) -> user -> {
+                    Double value = user instanceof PreparedUser
+                            ? ((PreparedUser) user).getNumberAttr(attributeSlots, slot, subject)
+                            : parseNumber(user.getAttr(attributeSlots, slot, subject));
+                    return Objects.isNull(value) || value.isNaN() ? null : value;
+                }));
+        kinds.put(ConditionType.SEMVER, new Kind<ComparableVersion>(ordered, true, true,
+                ComparableVersion::new,
+                Comparator.naturalOrder(),
+                (attributeSlots, slot, subject) -> user -> {
+                    if (user instanceof PreparedUser) {
+                        return ((PreparedUser) user).getSemverAttr(attributeSlots, slot, subject);
+                    }
+                    String value = user.getAttr(attributeSlots, slot, subject);
+                    return StringUtils.isBlank(value) ? null : new ComparableVersion(value);
+                }));
+        kinds.put(ConditionType.DATETIME, new Kind<Long>(datetime, false, false,
+                object -> Long.parseLong(object),
+                Comparator.naturalOrder(),
+                (attributeSlots, slot, subject) -> user -> user instanceof PreparedUser
+                        ? ((PreparedUser) user).getDatetimeAttr(attributeSlots, slot, subject)
+                        : parseDatetime(user.getAttr(attributeSlots, slot, subject))));
+    }
+
+    private final T[] thresholds;
+
+    private final Comparator<? super T> comparator;
+
+    private final Function<FPUser, T> reader;
+
+    private final int[][] candidates;
+
+    private ThresholdRuleIndex(int constrainedRules, T[] thresholds, Comparator<? super T> comparator,
+                               Function<FPUser, T> reader, int[][] candidates) {
+        super(constrainedRules);
+        this.thresholds = thresholds;
+        this.comparator = comparator;
+        this.reader = reader;
+        this.candidates = candidates;
+    }
+
+    /**
+     * @return the index, or null if no attribute is compared with thresholds by enough rules to be worth indexing
+     */
+    static ThresholdRuleIndex<?> of(Rule[] rules, AttributeSlots attributeSlots) {
+        Map<ConditionType, Map<String, Integer>> constrainedRules = new EnumMap<>(ConditionType.class);
+        for (Rule rule : rules) {
+            Map<ConditionType, Set<String>> subjects = new EnumMap<>(ConditionType.class);
+            for (Condition condition : conditions(rule)) {
+                if (Objects.nonNull(comparison(condition))) {
+                    subjects.computeIfAbsent(condition.getType(), type -> new HashSet<>())
+                            .add(condition.getSubject());
+                }
+            }
+            subjects.forEach((type, names) -> names.forEach(subject -> constrainedRules
+                    .computeIfAbsent(type, t -> new HashMap<>()).merge(subject, 1, Integer::sum)));
+        }
+        ConditionType type = null;
+        String subject = null;
+        int constrained = 0;
+        for (Map.Entry<ConditionType, Map<String, Integer>> bySubject : constrainedRules.entrySet()) {
+            for (Map.Entry<String, Integer> entry : bySubject.getValue().entrySet()) {
+                if (entry.getValue() > constrained) {
+                    type = bySubject.getKey();
+                    subject = entry.getKey();
+                    constrained = entry.getValue();
+                }
+            }
+        }
+        if (constrained < MIN_INDEXED_RULES) {
+            return null;
+        }
+        return build(kinds.get(type), type, subject, attributeSlots, constrained, rules);
+    }
+
+    private static <T> ThresholdRuleIndex<T> build(Kind<T> kind, ConditionType type, String subject,
+                                                   AttributeSlots attributeSlots, int constrained, Rule[] rules) {
+        List<List<Comparison<T>>> comparisons = new ArrayList<>();
+        boolean[] decided = new boolean[rules.length];
+        TreeSet<T> sorted = new TreeSet<>(kind.comparator);
+        for (int i = 0; i < rules.length; i++) {
+            List<Comparison<T>> ruleComparisons = new ArrayList<>();
+            for (Condition condition : conditions(rules[i])) {
+                if (condition.getType() == type && subject.equals(condition.getSubject())) {
+                    Comparison<T> comparison = kind.comparison(condition);
+                    if (Objects.nonNull(comparison)) {
+                        ruleComparisons.add(comparison);
+                        sorted.addAll(comparison.objects);
+                    }
+                }
+            }
+            comparisons.add(ruleComparisons);
+            decided[i] = ruleComparisons.size() == conditions(rules[i]).size() && selects(rules[i]);
+        }
+        @SuppressWarnings("unchecked")
+        T[] thresholds = (T[]) sorted.toArray();
+
+        int rangeCount = 2 * thresholds.length + 1;
+        List<List<Integer>> starts = new ArrayList<>(Collections.nCopies(rangeCount + 1, null));
+        List<List<Integer>> ends = new ArrayList<>(Collections.nCopies(rangeCount + 1, null));
+        for (int i = 0; i < rules.length; i++) {
+            int[] ranges = i == rules.length - 1
+                    ? new int[] {0, rangeCount - 1} : ranges(comparisons.get(i), thresholds, kind.comparator);
+            for (int r = 0; r < ranges.length; r += 2) {
+                events(starts, ranges[r]).add(i);
+                events(ends, ranges[r + 1] + 1).add(i);
+            }
+        }
+
+        int[][] candidates = new int[rangeCount][];
+        TreeSet<Integer> active = new TreeSet<>();
+        int entries = 0;
+        for (int range = 0; range < rangeCount; range++) {
+            active.removeAll(events(ends, range));
+            active.addAll(events(starts, range));
+            int[] rangeCandidates = candidates(active, decided);
+            if (range > 0 && Arrays.equals(candidates[range - 1], rangeCandidates)) {
+                candidates[range] = candidates[range - 1];
+                continue;
+            }
+            entries += rangeCandidates.length;
+            if (entries > MAX_CANDIDATES_PER_RULE * rules.length) {
+                return null;
+            }
+            candidates[range] = rangeCandidates;
+        }
+        return new ThresholdRuleIndex<>(constrained, thresholds, kind.comparator,
+                kind.reader.apply(attributeSlots, Objects.isNull(attributeSlots)
+                        ? AttributeSlots.NO_SLOT : attributeSlots.slotOf(subject), subject), candidates);
+    }
+
+    /**
+     * A rule whose conditions are all indexed comparisons and that serves a fixed variation is sure to hit in the
+     * ranges its comparisons hold, so the rules after it are not candidates there, not even the last one.
+     */
+    private static boolean selects(Rule rule) {
+        return Objects.nonNull(rule.getServe()) && Objects.nonNull(rule.getServe().getSelect());
+    }
+
+    private static List<Integer> events(List<List<Integer>> events, int range) {
+        List<Integer> atRange = events.get(range);
+        if (Objects.isNull(atRange)) {
+            atRange = new ArrayList<>();
+            events.set(range, atRange);
+        }
+        return atRange;
+    }
+
+    private static int[] candidates(Set<Integer> active, boolean[] decided) {
+        IntStream.Builder candidates = IntStream.builder();
+        for (int i : active) {
+            candidates.add(i);
+            if (decided[i]) {
+                break;
+            }
+        }
+        return candidates.build().toArray();
+    }
+
+    /**
+     * Range {@code 2k + 1} is the k-th threshold itself, range {@code 2k} holds the values between the thresholds
+     * {@code k - 1} and {@code k}.
+     *
+     * @return the ranges where all the comparisons hold, as sorted and disjoint inclusive bounds
+     * {@code [from, to, from, to, ...]}
+     */
+    private static <T> int[] ranges(List<Comparison<T>> comparisons, T[] thresholds,
+                                    Comparator<? super T> comparator) {
+        int[] ranges = {0, 2 * thresholds.length};
+        for (Comparison<T> comparison : comparisons) {
+            ranges = intersect(ranges, comparison.ranges(thresholds, comparator));
+        }
+        return ranges;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        IntStream.Builder ranges = IntStream.builder();
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            int from = Math.max(a[i], b[j]);
+            int to = Math.min(a[i + 1], b[j + 1]);
+            if (from <= to) {
+                ranges.add(from).add(to);
+            }
+            if (a[i + 1] < b[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return ranges.build().toArray();
+    }
+
+    @Override
+    int[] candidates(FPUser user) {
+        T value = reader.apply(user);
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        int threshold = Arrays.binarySearch(thresholds, value, comparator);
+        return candidates[threshold >= 0 ? 2 * threshold + 1 : 2 * (-threshold - 1)];
+    }
+
+    private static Comparison<?> comparison(Condition condition) {
+        Kind<?> kind = kinds.get(condition.getType());
+        return Objects.isNull(kind) || Objects.isNull(condition.getSubject()) ? null : kind.comparison(condition);
+    }
+
+    private static Double parseNumber(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long parseDatetime(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A condition as threshold comparisons: it holds if any object compares to the value as {@code test} accepts,
+     * or, if {@code negated}, if none compares equal.
+     */
+    private static final class Comparison<T> {
+
+        private final List<T> objects;
+
+        private final IntPredicate test;
+
+        private final boolean negated;
+
+        Comparison(List<T> objects, IntPredicate test, boolean negated) {
+            this.objects = objects;
+            this.test = test;
+            this.negated = negated;
+        }
+
+        /**
+         * @return the ranges where this comparison holds, see {@link #ranges(List, Object[], Comparator)}
+         */
+        int[] ranges(T[] thresholds, Comparator<? super T> comparator) {
+            int last = 2 * thresholds.length;
+            int[] points = objects.stream()
+                    .mapToInt(object -> 2 * Arrays.binarySearch(thresholds, object, comparator) + 1)
+                    .sorted().distinct().toArray();
+            List<int[]> ranges = new ArrayList<>();
+            if (negated) {
+                int from = 0;
+                for (int point : points) {
+                    ranges.add(new int[] {from, point - 1});
+                    from = point + 1;
+                }
+                ranges.add(new int[] {from, last});
+            } else if (points.length > 0) {
+                if (test.test(-1)) {
+                    ranges.add(new int[] {0, points[points.length - 1] - 1});
+                }
+                if (test.test(0)) {
+                    for (int point : points) {
+                        ranges.add(new int[] {point, point});
+                    }
+                }
+                if (test.test(1)) {
+                    ranges.add(new int[] {points[0] + 1, last});
+                }
+            }
+            ranges.sort(Comparator.comparingInt(range -> range[0]));
+            IntStream.Builder merged = IntStream.builder();
+            int from = -1;
+            int to = -2;
+            for (int[] range : ranges) {
+                if (range[0] > range[1]) {
+                    continue;
+                }
+                if (range[0] > to + 1) {
+                    if (from >= 0) {
+                        merged.add(from).add(to);
+                    }
+                    from = range[0];
+                }
+                to = Math.max(to, range[1]);
+            }
+            if (from >= 0) {
+                merged.add(from).add(to);
+            }
+            return merged.build().toArray();
+        }
+
+    }
+
+    /**
+     * How the conditions of one type compare their objects, mirroring {@link Condition}.
+     */
+    private static final class Kind<T> {
+
+        private final Map<PredicateType, IntPredicate> predicates;
+
+        private final boolean notEqualTo;
+
+        private final boolean skipsNullObjects;
+
+        private final Function<String, T> parser;
+
+        private final Comparator<? super T> comparator;
+
+        private final SlotReader<T> reader;
+
+        Kind(Map<PredicateType, IntPredicate> predicates, boolean notEqualTo, boolean skipsNullObjects,
+             Function<String, T> parser, Comparator<? super T> comparator, SlotReader<T> reader) {
+            this.predicates = predicates;
+            this.notEqualTo = notEqualTo;
+            this.skipsNullObjects = skipsNullObjects;
+            this.parser = parser;
+            this.comparator = comparator;
+            this.reader = reader;
+        }
+
+        /**
+         * @return the condition as comparisons, or null if it cannot be indexed, for instance because an object
+         * does not parse and the condition never matches
+         */
+        Comparison<T> comparison(Condition condition) {
+            PredicateType predicate = PredicateType.forValue(condition.getPredicate());
+            boolean negated = notEqualTo && predicate == PredicateType.NOT_EQUAL_TO;
+            IntPredicate test = negated ? predicates.get(PredicateType.EQUAL_TO) : predicates.get(predicate);
+            if (Objects.isNull(test) || Objects.isNull(condition.getObjects())) {
+                return null;
+            }
+            List<T> objects = new ArrayList<>();
+            for (String object : condition.getObjects()) {
+                if (Objects.isNull(object) && skipsNullObjects) {
+                    continue;
+                }
+                try {
+                    objects.add(parser.apply(object));
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+            return new Comparison<>(objects, test, negated);
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface SlotReader<T> {
+
+        Function<FPUser, T> apply(AttributeSlots attributeSlots, int slot, String subject);
+
+    }
+
+}
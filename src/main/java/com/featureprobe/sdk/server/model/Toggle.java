@@ -17,18 +17,45 @@
 
 package com.featureprobe.sdk.server.model;
 
+import com.featureprobe.sdk.server.AttributeSlots;
 import com.featureprobe.sdk.server.EvaluationResult;
 import com.featureprobe.sdk.server.FPUser;
 import com.featureprobe.sdk.server.HitResult;
-import com.featureprobe.sdk.server.exceptions.PrerequisiteException;
+import com.featureprobe.sdk.server.ReasonCode;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class Toggle {
 
+    static final int UNRESOLVED_DEPTH = -1;
+
+    static final int CYCLIC_DEPTH = Integer.MAX_VALUE;
+
+    /**
+     * The variation index of an evaluation that selects no variation, see {@link #evalVariation(FPUser, Map, Map,
+     * int)}.
+     */
+    public static final int NO_VARIATION = Integer.MIN_VALUE;
+
+    /**
+     * The rule index of an evaluation that is not decided by a rule.
+     */
+    public static final int NO_RULE = -1;
+
+    private static final int UNRESOLVED_TYPES = -1;
+
+    private static final int BOOLEAN_VARIATIONS = 1;
+
+    private static final int STRING_VARIATIONS = 1 << 1;
+
+    private static final int NUMBER_VARIATIONS = 1 << 2;
+
     private String key;
 
     private Boolean enabled;
@@ -51,76 +78,361 @@ public class Toggle {
 
     private Boolean forClient;
 
+    private Rule[] compiledRules;
+
+    private RuleIndex ruleIndex;
+
+    private EvaluationResult foldedDisabledResult;
+
+    private EvaluationResult foldedDefaultResult;
+
+    private int variationTypes = UNRESOLVED_TYPES;
+
+    private String quarantineReason;
+
+    private EvaluationResult quarantinedResult;
+
+    private int requiredDepth = UNRESOLVED_DEPTH;
+
+    private long dependencyFingerprint;
+
+    private boolean cacheable;
+
+    private final ConcurrentMap<Class<?>, AtomicReferenceArray<Object>> convertedVariations =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Evaluates this toggle for the user. The disabled result of a toggle with a fixed disabled serve, and the
+     * default result of one with no rules and a fixed default serve, are built once when the toggle is compiled
+     * and shared by every evaluation, so they are immutable, see {@link EvaluationResult#immutableCopy()}.
+     */
     public EvaluationResult eval(FPUser user, Map<String, Toggle> toggles, Map<String, Segment> segments,
                                  Object defaultValue, int deep) {
-        EvaluationResult result = createDisabledResult(user, key, defaultValue);
-        try {
-            return doEval(user, toggles, segments, defaultValue, deep);
-        } catch (PrerequisiteException e) {
-            result.setReason(e.getMessage());
-        } catch (Exception e) {
-            throw e;
-        }
+        return eval(user, new EvaluationContext(toggles, segments), defaultValue, deep);
+    }
 
-        return result;
+    public EvaluationResult eval(FPUser user, EvaluationContext context, Object defaultValue, int deep) {
+        if (Objects.nonNull(quarantineReason)) {
+            return quarantinedResult(defaultValue);
+        }
+        if (Boolean.TRUE.equals(enabled) && requiredDepth != UNRESOLVED_DEPTH && deep < requiredDepth) {
+            return createPrerequisiteErrorResult(user, defaultValue, "prerequisite depth overflow");
+        }
+        EvaluationResult result = Objects.isNull(defaultValue)
+                ? evalShared(user, context, deep) : doEval(user, context, defaultValue, deep);
+        String failure = context.takePrerequisiteFailure();
+        return Objects.isNull(failure) ? result : createPrerequisiteErrorResult(user, defaultValue, failure);
     }
 
     public EvaluationResult doEval(FPUser user, Map<String, Toggle> toggles, Map<String, Segment> segments,
                                    Object defaultValue, int depth) {
+        return doEval(user, new EvaluationContext(toggles, segments), defaultValue, depth);
+    }
 
-        String warning = "";
+    public EvaluationResult doEval(FPUser user, EvaluationContext context, Object defaultValue, int depth) {
+
+        HitResult lastMiss = null;
+
+        if (Objects.nonNull(quarantineReason)) {
+            return quarantinedResult(defaultValue);
+        }
 
         if (!enabled) {
             return createDisabledResult(user, this.key, defaultValue);
         }
 
         if (depth <= 0) {
-            throw new PrerequisiteException("prerequisite depth overflow");
+            context.failPrerequisites("prerequisite depth overflow");
+            return createDisabledResult(user, key, defaultValue);
         }
 
-        if (!meetPrerequisite(user, toggles, segments, depth)) {
+        if (!meetPrerequisite(user, context, depth)) {
             return createDisabledResult(user, key, defaultValue);
         }
 
-        if (rules != null && !rules.isEmpty()) {
-            for (int i = 0; i < rules.size(); i++) {
-                Rule rule = rules.get(i);
-                HitResult hitResult = rule.hit(user, segments, this.key);
-                if (hitResult.isHit()) {
-                    return hitValue(hitResult, defaultValue, Optional.of(i));
-                }
-                warning = hitResult.getReason().orElse("");
+        Rule[] rules = this.compiledRules;
+        if (rules == null) {
+            rules = compileRules(null);
+        }
+        int[] candidates = candidateRules(user);
+        int count = Objects.isNull(candidates) ? rules.length : candidates.length;
+        for (int c = 0; c < count; c++) {
+            int i = Objects.isNull(candidates) ? c : candidates[c];
+            HitResult hitResult = rules[i].hit(user, context, this.key);
+            if (hitResult.isHit()) {
+                return hitValue(hitResult, defaultValue, Optional.of(i));
+            }
+            lastMiss = hitResult;
+        }
+
+        return createDefaultResult(user, this.key, defaultValue, lastMiss);
+    }
+
+    /**
+     * Evaluates like {@link #eval(FPUser, Map, Map, Object, int)} with no default value, but returns only the
+     * indexes, so that the value APIs of primitive toggles evaluate without building results, reasons or boxed
+     * values. Nothing is allocated unless an error has to be reported.
+     *
+     * @return the rule and variation index packed into one long, see {@link #ruleIndex(long)} and
+     * {@link #variationIndex(long)}
+     */
+    public long evalVariation(FPUser user, Map<String, Toggle> toggles, Map<String, Segment> segments, int deep) {
+        EvaluationContext context = EvaluationContext.acquire(toggles, segments);
+        try {
+            if (Objects.nonNull(quarantineReason)) {
+                return evaluation(NO_RULE, NO_VARIATION);
+            }
+            if (Boolean.TRUE.equals(enabled) && requiredDepth != UNRESOLVED_DEPTH && deep < requiredDepth) {
+                return disabledVariation(user);
+            }
+            long evaluation = doEvalVariation(user, context, deep);
+            return context.hasPrerequisiteFailure() ? disabledVariation(user) : evaluation;
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * @return the rule index of a result of {@link #evalVariation(FPUser, Map, Map, int)}, or {@link #NO_RULE}
+     */
+    public static int ruleIndex(long evaluation) {
+        return (int) (evaluation >> 32);
+    }
+
+    /**
+     * @return the variation index of a result of {@link #evalVariation(FPUser, Map, Map, int)}, or
+     * {@link #NO_VARIATION}
+     */
+    public static int variationIndex(long evaluation) {
+        return (int) evaluation;
+    }
+
+    private static long evaluation(int ruleIndex, int variationIndex) {
+        return ((long) ruleIndex << 32) | (variationIndex & 0xFFFFFFFFL);
+    }
+
+    private long doEvalVariation(FPUser user, EvaluationContext context, int depth) {
+        if (Objects.nonNull(quarantineReason)) {
+            return evaluation(NO_RULE, NO_VARIATION);
+        }
+
+        if (!enabled) {
+            return disabledVariation(user);
+        }
+
+        if (depth <= 0) {
+            context.failPrerequisites("prerequisite depth overflow");
+            return disabledVariation(user);
+        }
+
+        if (!meetPrerequisiteVariations(user, context, depth)) {
+            return disabledVariation(user);
+        }
+
+        Rule[] rules = this.compiledRules;
+        if (rules == null) {
+            rules = compileRules(null);
+        }
+        int[] candidates = candidateRules(user);
+        int count = Objects.isNull(candidates) ? rules.length : candidates.length;
+        for (int c = 0; c < count; c++) {
+            int i = Objects.isNull(candidates) ? c : candidates[c];
+            int variationIndex = rules[i].hitVariation(user, context, this.key);
+            if (variationIndex != NO_VARIATION) {
+                return evaluation(i, variationIndex);
             }
         }
+        return evaluation(NO_RULE, defaultServe.variationIndex(user, this.key));
+    }
 
-        return createDefaultResult(user, this.key, defaultValue, warning);
+    private long disabledVariation(FPUser user) {
+        return evaluation(NO_RULE, disabledServe.variationIndex(user, this.key));
+    }
+
+    private boolean meetPrerequisiteVariations(FPUser user, EvaluationContext context, int depth) {
+        if (Objects.isNull(prerequisites) || prerequisites.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < prerequisites.size(); i++) {
+            Prerequisite prerequisite = prerequisites.get(i);
+            Toggle toggle = context.getToggles().get(prerequisite.getKey());
+            if (Objects.isNull(toggle)) {
+                context.failPrerequisites("prerequisite not exist: " + this.key);
+                return false;
+            }
+            int variationIndex = toggle.sharedVariation(user, context, depth - 1);
+            if (variationIndex == NO_VARIATION || context.hasPrerequisiteFailure())
+                return false;
+            Object value = toggle.variations.get(variationIndex);
+            if (Objects.isNull(value) || !value.equals(prerequisite.getValue()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The index counterpart of {@link #evalShared(FPUser, EvaluationContext, int)}.
+     */
+    private int sharedVariation(FPUser user, EvaluationContext context, int depth) {
+        if (requiredDepth == UNRESOLVED_DEPTH) {
+            return variationIndex(doEvalVariation(user, context, depth));
+        }
+        Integer variationIndex = context.prerequisiteVariation(this);
+        if (Objects.isNull(variationIndex)) {
+            int evaluated = variationIndex(doEvalVariation(user, context, depth));
+            if (!context.hasPrerequisiteFailure()) {
+                context.rememberPrerequisiteVariation(this, evaluated);
+            }
+            return evaluated;
+        }
+        return variationIndex;
+    }
+
+    /**
+     * Compiles the rules and serves of this toggle into their evaluation form. Called once for every toggle when a
+     * repository version is loaded, so that the request path only runs the precomputed plan.
+     */
+    public void compile(CompileContext context) {
+        this.quarantineReason = null;
+        this.quarantinedResult = null;
+        if (Objects.nonNull(rules)) {
+            for (Rule rule : rules) {
+                rule.compile(context);
+            }
+        }
+        if (Objects.nonNull(disabledServe)) {
+            disabledServe.compile(context);
+        }
+        if (Objects.nonNull(defaultServe)) {
+            defaultServe.compile(context);
+        }
+        this.compiledRules = compileRules(context.getAttributeSlots());
+        this.variationTypes = variationTypes(variations);
+        this.foldedDisabledResult = foldResult(disabledServe, ReasonCode.TOGGLE_DISABLED);
+        this.foldedDefaultResult = Objects.isNull(rules) || rules.isEmpty()
+                ? foldResult(defaultServe, ReasonCode.DEFAULT_RULE_HIT) : null;
+    }
+
+    /**
+     * @return whether every variation is a {@code type} or null, so that a value evaluated for {@code type} can
+     * be cast without checking it; integer variations count as {@link Double}, which they are evaluated as
+     */
+    public boolean hasVariationsOf(Class<?> type) {
+        int types = this.variationTypes;
+        if (types == UNRESOLVED_TYPES) {
+            types = variationTypes(variations);
+            this.variationTypes = types;
+        }
+        if (type == Boolean.class) {
+            return (types & BOOLEAN_VARIATIONS) != 0;
+        }
+        if (type == String.class) {
+            return (types & STRING_VARIATIONS) != 0;
+        }
+        if (type == Double.class) {
+            return (types & NUMBER_VARIATIONS) != 0;
+        }
+        return Objects.nonNull(variations)
+                && variations.stream().allMatch(variation -> Objects.isNull(variation) || type.isInstance(variation));
+    }
+
+    private static int variationTypes(List<Object> variations) {
+        if (Objects.isNull(variations)) {
+            return 0;
+        }
+        int types = BOOLEAN_VARIATIONS | STRING_VARIATIONS | NUMBER_VARIATIONS;
+        for (Object variation : variations) {
+            if (Objects.nonNull(variation)) {
+                types &= variation instanceof Boolean ? BOOLEAN_VARIATIONS
+                        : variation instanceof String ? STRING_VARIATIONS
+                        : variation instanceof Double || variation instanceof Integer ? NUMBER_VARIATIONS : 0;
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @return the result of a serve that selects a fixed variation, whatever the user, as an immutable result that
+     * evaluations share, or null if the serve is a split or selects no variation
+     */
+    private EvaluationResult foldResult(Serve serve, ReasonCode reasonCode) {
+        if (Objects.isNull(serve) || Objects.isNull(serve.getSelect()) || Objects.isNull(variations)
+                || serve.getSelect() < 0 || serve.getSelect() >= variations.size()) {
+            return null;
+        }
+        EvaluationResult result = hitValue(serve.evalIndex(null, key), null, Optional.empty());
+        result.setReason(reasonCode, null, null);
+        return result.immutableCopy();
+    }
+
+    /**
+     * @return whether a folded result is the result for {@code defaultValue}, which only changes integer
+     * variations read as doubles
+     */
+    private static boolean folds(EvaluationResult folded, Object defaultValue) {
+        return Objects.nonNull(folded) && !(defaultValue instanceof Double && folded.getValue() instanceof Integer);
+    }
+
+    /**
+     * @param attributeSlots the slots of the version being compiled, or null if the rules are compiled on first use
+     */
+    private Rule[] compileRules(AttributeSlots attributeSlots) {
+        Rule[] compiled = Objects.isNull(rules) ? new Rule[0] : rules.toArray(new Rule[0]);
+        this.ruleIndex = RuleIndex.of(compiled, attributeSlots);
+        this.compiledRules = compiled;
+        return compiled;
+    }
+
+    /**
+     * @return the indexes of the rules that can match the user in rule order, see {@link RuleIndex}, or null if
+     * every rule has to be tried
+     */
+    private int[] candidateRules(FPUser user) {
+        RuleIndex index = this.ruleIndex;
+        return Objects.isNull(index) || Objects.isNull(user) ? null : index.candidates(user);
     }
 
     private EvaluationResult createDisabledResult(FPUser user, String toggleKey, Object defaultValue) {
+        EvaluationResult folded = this.foldedDisabledResult;
+        if (folds(folded, defaultValue)) {
+            return folded;
+        }
         EvaluationResult disabledResult = hitValue(disabledServe.evalIndex(user, this.key),
                 defaultValue, Optional.empty());
-        disabledResult.setReason("Toggle disabled.");
+        disabledResult.setReason(ReasonCode.TOGGLE_DISABLED, null, null);
         return disabledResult;
     }
 
-    private EvaluationResult createDefaultResult(FPUser user, String toggleKey, Object defaultValue, String warning) {
+    private EvaluationResult createPrerequisiteErrorResult(FPUser user, Object defaultValue, String reason) {
+        EvaluationResult result = hitValue(disabledServe.evalIndex(user, this.key), defaultValue, Optional.empty());
+        result.setReason(reason);
+        return result;
+    }
+
+    private EvaluationResult createDefaultResult(FPUser user, String toggleKey, Object defaultValue,
+                                                 HitResult lastMiss) {
+        EvaluationResult folded = this.foldedDefaultResult;
+        if (Objects.isNull(lastMiss) && folds(folded, defaultValue)) {
+            return folded;
+        }
         EvaluationResult defaultResult = hitValue(defaultServe.evalIndex(user, toggleKey), defaultValue,
                 Optional.empty());
-        defaultResult.setReason("Default rule hit. " + warning);
+        defaultResult.setReason(ReasonCode.DEFAULT_RULE_HIT, lastMiss, null);
         return defaultResult;
     }
 
-    protected boolean meetPrerequisite(FPUser user, Map<String, Toggle> toggles, Map<String, Segment> segments,
-                                       int depth) {
+    protected boolean meetPrerequisite(FPUser user, EvaluationContext context, int depth) {
         if (Objects.isNull(prerequisites) || prerequisites.isEmpty()) {
             return true;
         }
         for (Prerequisite prerequisite : prerequisites) {
-            Toggle toggle = toggles.get(prerequisite.getKey());
-            if (Objects.isNull(toggle))
-                throw new PrerequisiteException("prerequisite not exist: " + this.key);
-            EvaluationResult eval = toggle.doEval(user, toggles, segments, null, depth - 1);
-            if (Objects.isNull(eval.getValue()))
+            Toggle toggle = context.getToggles().get(prerequisite.getKey());
+            if (Objects.isNull(toggle)) {
+                context.failPrerequisites("prerequisite not exist: " + this.key);
+                return false;
+            }
+            EvaluationResult eval = toggle.evalShared(user, context, depth - 1);
+            if (context.hasPrerequisiteFailure() || Objects.isNull(eval.getValue()))
                 return false;
             if (!eval.getValue().equals(prerequisite.getValue()))
                 return false;
@@ -128,9 +440,39 @@ public class Toggle {
         return true;
     }
 
+    /**
+     * Evaluates without a default value, as prerequisites and batch evaluations do. Once the prerequisite graph is
+     * resolved a toggle evaluates to the same result at every depth it can be reached with, so it is evaluated
+     * once per pass however many toggles depend on it.
+     */
+    private EvaluationResult evalShared(FPUser user, EvaluationContext context, int depth) {
+        if (requiredDepth == UNRESOLVED_DEPTH) {
+            return doEval(user, context, null, depth);
+        }
+        EvaluationResult result = context.prerequisiteResult(this);
+        if (Objects.isNull(result)) {
+            result = doEval(user, context, null, depth);
+            if (!context.hasPrerequisiteFailure()) {
+                context.rememberPrerequisiteResult(this, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records the smallest prerequisite depth this toggle evaluates with, or {@link #CYCLIC_DEPTH}, see
+     * {@link PrerequisiteGraph}. Toggles are checked against it before evaluation, so a cycle or a too deep
+     * chain is reported without walking the prerequisites. A cycle exceeds every depth, so it is reported as a
+     * depth overflow, as walking it would.
+     */
+    void resolveRequiredDepth(int requiredDepth) {
+        this.requiredDepth = requiredDepth;
+    }
+
     private EvaluationResult hitValue(HitResult hitResult, Object defaultValue, Optional<Integer> ruleIndex) {
         EvaluationResult res = new EvaluationResult(defaultValue, ruleIndex, hitResult.getIndex(),
-                this.version, hitResult.getReason().orElse(""));
+                this.version, null);
+        res.setReason(ReasonCode.SERVE, hitResult, null);
         if (hitResult.getIndex().isPresent()) {
             Object variation = variations.get(hitResult.getIndex().get());
             if (defaultValue instanceof Double && variation instanceof Integer) {
@@ -138,11 +480,63 @@ public class Toggle {
             } else {
                 res.setValue(variation);
             }
-            ruleIndex.ifPresent(idx -> res.setReason("Rule " + idx + " hit"));
+            if (ruleIndex.isPresent()) {
+                res.setReason(ReasonCode.RULE_HIT, ruleIndex.get(), null);
+            }
         }
         return res;
     }
 
+    /**
+     * Makes every evaluation of this toggle serve the default value, because it has invalid data, see
+     * {@link RepositoryValidator}. Evaluated as a prerequisite, a quarantined toggle has no value, so the
+     * prerequisite is not met. Evaluations without a default value share one immutable result.
+     */
+    void quarantine(RepositoryProblem problem) {
+        String reason = "Toggle quarantined: " + problem;
+        this.quarantinedResult = new EvaluationResult(null, Optional.empty(), Optional.empty(), version, reason)
+                .immutableCopy();
+        this.quarantineReason = reason;
+    }
+
+    /**
+     * @return why every evaluation of this toggle serves the default value, or null if it is not quarantined
+     */
+    public String quarantineReason() {
+        return quarantineReason;
+    }
+
+    private EvaluationResult quarantinedResult(Object defaultValue) {
+        if (Objects.isNull(defaultValue)) {
+            return quarantinedResult;
+        }
+        return new EvaluationResult(defaultValue, Optional.empty(), Optional.empty(), version, quarantineReason);
+    }
+
+    /**
+     * Records what this toggle depends on, resolved by {@link ToggleDependencies} when the repository version is
+     * compiled.
+     */
+    void resolveDependencies(long dependencyFingerprint, boolean cacheable) {
+        this.dependencyFingerprint = dependencyFingerprint;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * @return a fingerprint of the versions of this toggle and of the toggles and segments it depends on
+     */
+    public long dependencyFingerprint() {
+        return dependencyFingerprint;
+    }
+
+    /**
+     * @return whether a result may be cached under {@link #dependencyFingerprint()}; false until the repository
+     * version is compiled, and for toggles that depend on the current time or on unversioned data
+     */
+    public boolean cacheable() {
+        return cacheable;
+    }
+
     public String getKey() {
         return key;
     }
@@ -157,6 +551,7 @@ public class Toggle {
 
     public void setEnabled(Boolean enabled) {
         this.enabled = enabled;
+        this.requiredDepth = UNRESOLVED_DEPTH;
     }
 
     public Long getVersion() {
@@ -165,6 +560,9 @@ public class Toggle {
 
     public void setVersion(Long version) {
         this.version = version;
+        this.cacheable = false;
+        this.foldedDisabledResult = null;
+        this.foldedDefaultResult = null;
     }
 
     public Serve getDisabledServe() {
@@ -173,6 +571,7 @@ public class Toggle {
 
     public void setDisabledServe(Serve disabledServe) {
         this.disabledServe = disabledServe;
+        this.foldedDisabledResult = null;
     }
 
     public Serve getDefaultServe() {
@@ -181,6 +580,7 @@ public class Toggle {
 
     public void setDefaultServe(Serve defaultServe) {
         this.defaultServe = defaultServe;
+        this.foldedDefaultResult = null;
     }
 
     public List<Rule> getRules() {
@@ -189,6 +589,10 @@ public class Toggle {
 
     public void setRules(List<Rule> rules) {
         this.rules = rules;
+        this.compiledRules = null;
+        this.ruleIndex = null;
+        this.cacheable = false;
+        this.foldedDefaultResult = null;
     }
 
     public List<Object> getVariations() {
@@ -197,6 +601,27 @@ public class Toggle {
 
     public void setVariations(List<Object> variations) {
         this.variations = variations;
+        this.convertedVariations.clear();
+        this.variationTypes = UNRESOLVED_TYPES;
+        this.foldedDisabledResult = null;
+        this.foldedDefaultResult = null;
+    }
+
+    /**
+     * Returns a variation converted by the caller, see {@link #cacheConvertedVariation(Class, int, Object)}.
+     * Each version of a toggle is a new object, so cached conversions never outlive the variations they were
+     * converted from.
+     *
+     * @return the variation at {@code index} converted to {@code type}, or null if it is not cached
+     */
+    public Object getConvertedVariation(Class<?> type, int index) {
+        AtomicReferenceArray<Object> converted = convertedVariations.get(type);
+        return Objects.isNull(converted) ? null : converted.get(index);
+    }
+
+    public void cacheConvertedVariation(Class<?> type, int index, Object converted) {
+        convertedVariations.computeIfAbsent(type, t -> new AtomicReferenceArray<>(variations.size()))
+                .set(index, converted);
     }
 
     public Boolean getForClient() {
@@ -229,5 +654,7 @@ public class Toggle {
 
     public void setPrerequisites(List<Prerequisite> prerequisites) {
         this.prerequisites = prerequisites;
+        this.requiredDepth = UNRESOLVED_DEPTH;
+        this.cacheable = false;
     }
 }
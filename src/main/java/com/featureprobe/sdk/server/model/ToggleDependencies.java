@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.featureprobe.sdk.server.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The toggles and segments the result of a toggle depends on, through its prerequisites and segment conditions.
+ * Resolving them records on every toggle a fingerprint of their versions, so that a result cached for one
+ * repository version stays valid in the next one as long as nothing it depends on has changed. A toggle that
+ * reaches a datetime condition, or an unversioned toggle or segment, is not cacheable.
+ */
+final class ToggleDependencies {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private static final long TOGGLE = 1;
+
+    private static final long SEGMENT = 2;
+
+    private static final long MISSING = -1;
+
+    private final Map<String, Toggle> toggles;
+
+    private final Map<String, Segment> segments;
+
+    private final Set<String> visitedToggles = new HashSet<>();
+
+    private final Set<String> visitedSegments = new HashSet<>();
+
+    private final Deque<String> pendingToggles = new ArrayDeque<>();
+
+    private final Deque<String> pendingSegments = new ArrayDeque<>();
+
+    private long fingerprint = OFFSET_BASIS;
+
+    private boolean cacheable = true;
+
+    private ToggleDependencies(Map<String, Toggle> toggles, Map<String, Segment> segments) {
+        this.toggles = toggles;
+        this.segments = segments;
+    }
+
+    static void resolve(Map<String, Toggle> toggles, Map<String, Segment> segments) {
+        toggles.forEach((key, toggle) -> {
+            ToggleDependencies dependencies = new ToggleDependencies(toggles, segments);
+            dependencies.visit(key);
+            toggle.resolveDependencies(dependencies.fingerprint, dependencies.cacheable);
+        });
+    }
+
+    /**
+     * Visits the toggle and everything it reaches from work lists rather than by recursion, so a long prerequisite
+     * or segment chain cannot overflow the thread stack.
+     */
+    private void visit(String key) {
+        reachToggle(key);
+        while (!pendingToggles.isEmpty() || !pendingSegments.isEmpty()) {
+            if (!pendingToggles.isEmpty()) {
+                String toggleKey = pendingToggles.pop();
+                visitToggle(toggleKey, toggles.get(toggleKey));
+            } else {
+                String segmentKey = pendingSegments.pop();
+                visitSegment(segmentKey, segments.get(segmentKey));
+            }
+        }
+    }
+
+    private void reachToggle(String key) {
+        if (visitedToggles.add(key)) {
+            pendingToggles.push(key);
+        }
+    }
+
+    private void reachSegment(String key) {
+        if (visitedSegments.add(key)) {
+            pendingSegments.push(key);
+        }
+    }
+
+    private void visitToggle(String key, Toggle toggle) {
+        if (Objects.isNull(toggle)) {
+            mix(TOGGLE, key, MISSING);
+            return;
+        }
+        mix(TOGGLE, key, toggle.getVersion());
+        if (Objects.nonNull(toggle.getRules())) {
+            for (Rule rule : toggle.getRules()) {
+                visitConditions(rule.getConditions());
+            }
+        }
+        if (Objects.nonNull(toggle.getPrerequisites())) {
+            for (Prerequisite prerequisite : toggle.getPrerequisites()) {
+                reachToggle(prerequisite.getKey());
+            }
+        }
+    }
+
+    private void visitSegment(String key, Segment segment) {
+        if (Objects.isNull(segment)) {
+            mix(SEGMENT, key, MISSING);
+            return;
+        }
+        mix(SEGMENT, key, segment.getVersion());
+        if (Objects.nonNull(segment.getRules())) {
+            for (SegmentRule rule : segment.getRules()) {
+                visitConditions(rule.getConditions());
+            }
+        }
+    }
+
+    private void visitConditions(List<Condition> conditions) {
+        if (Objects.isNull(conditions)) {
+            return;
+        }
+        for (Condition condition : conditions) {
+            if (condition.getType() == ConditionType.DATETIME) {
+                cacheable = false;
+            } else if (condition.getType() == ConditionType.SEGMENT && Objects.nonNull(condition.getObjects())) {
+                for (String segmentKey : condition.getObjects()) {
+                    reachSegment(segmentKey);
+                }
+            }
+        }
+    }
+
+    private void mix(long kind, String key, Long version) {
+        if (Objects.isNull(version)) {
+            cacheable = false;
+            return;
+        }
+        fingerprint = (fingerprint ^ kind) * PRIME;
+        fingerprint = (fingerprint ^ Objects.hashCode(key)) * PRIME;
+        fingerprint = (fingerprint ^ version) * PRIME;
+    }
+
+}
@@ -112,6 +112,21 @@ class ConditionSpec extends Specification {
         !hitMiss2
     }
 
+    def "[matches regex] stops a pathological pattern at the step budget"() {
+        when:
+        condition.setObjects(["^(a+)+\$"])
+        condition.setPredicate(PredicateType.MATCHES_REGEX)
+        condition.compile(new CompileContext(10000))
+        user.with("userId", "a" * 64 + "!")
+        def hitMiss = condition.matchObjects(user, [:])
+        user.with("userId", "aaaa")
+        def hitSuccess = condition.matchObjects(user, [:])
+
+        then:
+        !hitMiss
+        hitSuccess
+    }
+
     def "[is not any of] string condition match"() {
         when:
         condition.setObjects(["12345", "987654", "665544"])
@@ -182,6 +197,56 @@ class ConditionSpec extends Specification {
         !hitMiss
     }
 
+    def "[#predicate] compiled automaton agrees with a scan of every object"() {
+        given:
+        def random = new Random(42)
+        def alphabet = "abc"
+        def randomString = { int maxLength ->
+            def length = random.nextInt(maxLength + 1)
+            (0..<length).collect { alphabet[random.nextInt(alphabet.length())] }.join()
+        }
+        def objects = (0..<40).collect { randomString(4) }.findAll { !it.isEmpty() }.unique()
+        condition.setObjects(objects)
+        condition.setPredicate(predicate)
+
+        expect:
+        objects.size() > 8
+        (0..<500).every {
+            def target = randomString(12)
+            user.with("userId", target)
+            condition.matchObjects(user, [:]) == expected(target, objects)
+        }
+
+        where:
+        predicate                         | expected
+        PredicateType.STARTS_WITH         | { t, o -> o.any { t.startsWith(it) } }
+        PredicateType.ENDS_WITH           | { t, o -> o.any { t.endsWith(it) } }
+        PredicateType.CONTAINS            | { t, o -> o.any { t.contains(it) } }
+        PredicateType.DOES_NOT_START_WITH | { t, o -> o.every { !t.startsWith(it) } }
+        PredicateType.DOES_NOT_END_WITH   | { t, o -> o.every { !t.endsWith(it) } }
+        PredicateType.DOES_NOT_CONTAIN    | { t, o -> o.every { !t.contains(it) } }
+    }
+
+    def "[contains] automaton follows failure links across overlapping objects"() {
+        when:
+        condition.setObjects(["he", "she", "his", "hers", "x1", "x2", "x3", "x4", "x5", "x6"])
+        condition.setPredicate(PredicateType.CONTAINS)
+        user.with("userId", "ushers")
+        def hitSuccess1 = condition.matchObjects(user, [:])
+        user.with("userId", "ahis")
+        def hitSuccess2 = condition.matchObjects(user, [:])
+        user.with("userId", "shx")
+        def hitMiss1 = condition.matchObjects(user, [:])
+        user.with("userId", null)
+        def hitMiss2 = condition.matchObjects(user, [:])
+
+        then:
+        hitSuccess1
+        hitSuccess2
+        !hitMiss1
+        !hitMiss2
+    }
+
     def "[is in] segment condition match"() {
         given:
         segments = ["test_project\$test_segment": new Segment(uniqueId: "test_project\$test_segment", version: 1,
@@ -282,6 +347,27 @@ class ConditionSpec extends Specification {
         !hitMiss2
     }
 
+    def "Type mismatches are rate limited per subject, not per attribute value"() {
+        given:
+        def subject = "mismatch_" + UUID.randomUUID()
+        condition.setType(type)
+        condition.setSubject(subject)
+        condition.setObjects(["12"])
+        condition.setPredicate(predicate)
+
+        when:
+        (0..<2000).each { condition.matchObjects(new FPUser().stableRollout("u").with(subject, "bad-" + it), [:]) }
+
+        then:
+        limiter.@limits.containsKey(subject)
+        limiter.@limits.keySet().every { !it.toString().startsWith("bad-") }
+
+        where:
+        type                   | predicate              | limiter
+        ConditionType.NUMBER   | PredicateType.EQUAL_TO | Condition.numberMismatchLogger
+        ConditionType.DATETIME | PredicateType.AFTER    | Condition.datetimeMismatchLogger
+    }
+
     def "[!=] number condition match"() {
         when:
         condition.setType(ConditionType.NUMBER)
@@ -305,6 +391,55 @@ class ConditionSpec extends Specification {
         !hitMiss3
     }
 
+    def "number condition with an unparseable object is rejected when compiled"() {
+        when:
+        condition.setType(ConditionType.NUMBER)
+        condition.setObjects(["12", "foo"])
+        condition.setPredicate(PredicateType.EQUAL_TO)
+        condition.compile(CompileContext.DEFAULT)
+        user.with("userId", "12")
+        def hitMiss1 = condition.matchObjects(user, [:])
+        condition.setObjects(["12", "16"])
+        def hitSuccess = condition.matchObjects(user, [:])
+
+        then:
+        !hitMiss1
+        hitSuccess
+    }
+
+    def "datetime condition matches the current time against the earliest or latest object"() {
+        when:
+        def now = Instant.now().getEpochSecond()
+        condition.setType(ConditionType.DATETIME)
+        condition.setPredicate(predicate)
+        condition.setObjects(objects.collect { String.valueOf(now + it) })
+
+        then:
+        condition.matchObjects(user, [:]) == hit
+        condition.matchObjects(user.prepare(), [:]) == hit
+
+        where:
+        predicate            | objects         | hit
+        PredicateType.AFTER  | [-100, 100]     | true
+        PredicateType.AFTER  | [100, 200]      | false
+        PredicateType.AFTER  | []              | false
+        PredicateType.BEFORE | [-100, 100]     | true
+        PredicateType.BEFORE | [-200, -100]    | false
+        PredicateType.BEFORE | []              | false
+    }
+
+    def "datetime condition with an unparseable object is rejected when compiled"() {
+        when:
+        condition.setType(ConditionType.DATETIME)
+        condition.setObjects(["1000", "tomorrow"])
+        condition.setPredicate(PredicateType.AFTER)
+        user.with("userId", "2000")
+        def hitMiss = condition.matchObjects(user, [:])
+
+        then:
+        !hitMiss
+    }
+
     def "[>] number condition match"() {
         when:
         condition.setType(ConditionType.NUMBER)
@@ -0,0 +1,172 @@
+package com.featureprobe.sdk.server
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.featureprobe.sdk.server.model.Prerequisite
+import com.featureprobe.sdk.server.model.Repository
+import com.featureprobe.sdk.server.model.Serve
+import com.featureprobe.sdk.server.model.Toggle
+import com.google.common.io.ByteStreams
+import spock.lang.Specification
+
+import java.nio.charset.Charset
+
+class EvaluateAllSpec extends Specification {
+
+    def FeatureProbe featureProbe
+    def EventProcessor eventProcessor
+    def MemoryDataRepository dataRepository
+    def FPUser user
+
+    def setup() {
+        def repository = loadRepository()
+        repository.toggles.get("string_toggle").forClient = true
+        dataRepository = new MemoryDataRepository()
+        dataRepository.refresh(repository)
+        featureProbe = new FeatureProbe(dataRepository)
+        eventProcessor = Mock(EventProcessor)
+        featureProbe.eventProcessor = eventProcessor
+        user = new FPUser().stableRollout("key").with("city", "1").with("os", "mac")
+    }
+
+    def loadRepository() {
+        def mapper = new ObjectMapper()
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        InputStream is = getClass().getClassLoader().getResourceAsStream("datasource/repo.json")
+        String data = new String(ByteStreams.toByteArray(is), Charset.forName("UTF-8"))
+        return mapper.readValue(data, Repository.class)
+    }
+
+    def "Evaluate all toggles like individual calls"() {
+        when:
+        def details = featureProbe.evaluateAll(user)
+
+        then:
+        details.keySet() == featureProbe.dataRepository.getAllToggle().keySet()
+        details.string_toggle.value == featureProbe.stringValue("string_toggle", user, "x")
+        details.string_toggle.ruleIndex == featureProbe.stringDetail("string_toggle", user, "x").ruleIndex
+        details.bool_toggle.value == featureProbe.boolValue("bool_toggle", user, false)
+        details.number_toggle.value == featureProbe.numberValue("number_toggle", user, 0)
+        details.multi_condition_toggle.value == ["variation_0": ""]
+        details.disabled_toggle.reason == "Toggle disabled."
+    }
+
+    def "Access events of a batch are pushed together"() {
+        when:
+        featureProbe.evaluateAll(user)
+
+        then:
+        1 * eventProcessor.pushAll({ it.size() == 6 && it.every { it instanceof AccessEvent } })
+        0 * eventProcessor.push(_)
+    }
+
+    def "Filter toggles by key and client availability"() {
+        expect:
+        featureProbe.evaluateAll(user, { it.startsWith("s") }, false).keySet() == ["string_toggle"] as Set
+        featureProbe.evaluateAll(user, { true }, true).keySet() == ["string_toggle"] as Set
+        featureProbe.evaluateAll(user, { it != "string_toggle" }, true).isEmpty()
+    }
+
+    def "Evaluate nothing before the repository is initialized"() {
+        given:
+        featureProbe = new FeatureProbe(new MemoryDataRepository())
+
+        expect:
+        featureProbe.evaluateAll(user).isEmpty()
+    }
+
+    def "Evaluate one toggle for a batch of users like individual calls"() {
+        given:
+        def users = (0..<10000).collect { new FPUser().stableRollout("user-" + it).with("city", String.valueOf(it % 5)) }
+
+        when:
+        def results = featureProbe.evaluateBatch("string_toggle", users, false).collect()
+
+        then:
+        results*.key == users
+        results.every { it.value.value == featureProbe.stringValue("string_toggle", it.key, "x") }
+        0 * eventProcessor.pushAll(_)
+    }
+
+    def "Track the access events of a batch on request"() {
+        when:
+        featureProbe.evaluateBatch("bool_toggle", [user, user, user], true).collect()
+
+        then:
+        3 * eventProcessor.pushAll({ it.size() == 1 && it[0] instanceof AccessEvent })
+    }
+
+    def "A batch keeps the repository version it was started with"() {
+        given:
+        def users = [new FPUser().stableRollout("key").with("city", "9")].stream()
+        def batch = featureProbe.evaluateBatch("string_toggle", users, false)
+        def repository = loadRepository()
+        repository.toggles.get("string_toggle").defaultServe = new Serve(1)
+        dataRepository.refresh(repository)
+
+        expect:
+        batch.findFirst().get().value.value == "1"
+        featureProbe.stringValue("string_toggle", user.with("city", "9"), "x") == "2"
+    }
+
+    def "A batch of an unknown toggle reports it for every user"() {
+        expect:
+        featureProbe.evaluateBatch("unknown", [user], false).findFirst().get().value.reason == "Toggle not exist"
+    }
+
+    def "Index evaluation selects the same variations as result evaluation"() {
+        given:
+        def toggles = dataRepository.getAllToggle()
+        def segments = dataRepository.getAllSegment()
+        def random = new Random(7)
+
+        expect:
+        (0..<200).every {
+            def user = new FPUser().stableRollout("user-" + random.nextInt())
+                    .with("city", String.valueOf(random.nextInt(6)))
+                    .with("os", random.nextBoolean() ? "mac" : "linux")
+            toggles.values().every { toggle ->
+                def result = toggle.eval(user, toggles, segments, null, 20)
+                def evaluation = toggle.evalVariation(user, toggles, segments, 20)
+                def variationIndex = Toggle.variationIndex(evaluation)
+                def ruleIndex = Toggle.ruleIndex(evaluation)
+                result.variationIndex.orElse(Toggle.NO_VARIATION) == variationIndex &&
+                        result.ruleIndex.orElse(Toggle.NO_RULE) == ruleIndex
+            }
+        }
+    }
+
+    def "Evaluate a large repository whose toggles share prerequisites"() {
+        given:
+        def toggles = [:]
+        (0..<5000).each {
+            def key = "toggle_" + it
+            toggles[key] = new Toggle(key: key, enabled: true, version: 1, variations: ["on", "off"],
+                    disabledServe: new Serve(1), defaultServe: new Serve(0), prerequisites: it == 0 ? [] :
+                    [new Prerequisite(key: "toggle_" + it.intdiv(2), value: "on")])
+        }
+        dataRepository.refresh(new Repository(toggles, [:], null, 2))
+
+        when:
+        def details = featureProbe.evaluateAll(user)
+
+        then:
+        details.size() == 5000
+        details.values().every { it.value == "on" && it.reason.startsWith("Default rule hit") }
+    }
+
+    def "Primitive values track their access events"() {
+        when:
+        def bool = featureProbe.boolValue("bool_toggle", user, false)
+        def number = featureProbe.numberValue("number_toggle", user, 0)
+
+        then:
+        bool
+        number == 1
+        1 * eventProcessor.push({ it.key == "bool_toggle" && it.value == true && it.ruleIndex == 0 })
+        1 * eventProcessor.push({ it.key == "number_toggle" && it.value == 1d && it.variationIndex == 0 })
+        featureProbe.boolValue("string_toggle", user, false) == false
+        featureProbe.numberValue("unknown", user, 3) == 3
+    }
+
+}
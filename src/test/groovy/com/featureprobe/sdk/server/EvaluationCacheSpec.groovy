@@ -0,0 +1,159 @@
+package com.featureprobe.sdk.server
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.featureprobe.sdk.server.model.Condition
+import com.featureprobe.sdk.server.model.ConditionType
+import com.featureprobe.sdk.server.model.PredicateType
+import com.featureprobe.sdk.server.model.Repository
+import com.featureprobe.sdk.server.model.Rule
+import com.featureprobe.sdk.server.model.Serve
+import com.google.common.io.ByteStreams
+import spock.lang.Specification
+
+import java.nio.charset.Charset
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+class EvaluationCacheSpec extends Specification {
+
+    def FeatureProbe featureProbe
+    def EventProcessor eventProcessor
+    def MemoryDataRepository dataRepository
+    def FPUser user
+
+    def setup() {
+        dataRepository = new MemoryDataRepository()
+        dataRepository.refresh(loadRepository())
+        featureProbe = new FeatureProbe(dataRepository)
+        eventProcessor = Mock(EventProcessor)
+        featureProbe.eventProcessor = eventProcessor
+        featureProbe.evaluationCache = new EvaluationCache(100, Duration.ofMinutes(1))
+        user = new FPUser().stableRollout("key").with("city", "1")
+    }
+
+    def loadRepository() {
+        def mapper = new ObjectMapper()
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        InputStream is = getClass().getClassLoader().getResourceAsStream("datasource/repo.json")
+        String data = new String(ByteStreams.toByteArray(is), Charset.forName("UTF-8"))
+        return mapper.readValue(data, Repository.class)
+    }
+
+    def loadRepositoryWithSegmentVersion(long repositoryVersion, long segmentVersion) {
+        def repository = loadRepository()
+        repository.segments.values().first().version = segmentVersion
+        repository.version = repositoryVersion
+        return repository
+    }
+
+    def "Repeated evaluations for the same user are served from the cache"() {
+        when:
+        def first = featureProbe.stringDetail("string_toggle", user, "x")
+        def second = featureProbe.stringDetail("string_toggle", user, "y")
+        def number = featureProbe.numberValue("number_toggle", user, 0)
+        def cachedNumber = featureProbe.numberValue("number_toggle", user, 5)
+
+        then:
+        first.value == "1" && second.value == "1"
+        second.reason == "Rule 0 hit"
+        number == 1d && cachedNumber == 1d
+        featureProbe.evaluationCacheStats().hitCount() == 2
+        featureProbe.evaluationCacheStats().missCount() == 2
+        4 * eventProcessor.push(_)
+    }
+
+    def "Users with other attributes are evaluated again"() {
+        when:
+        featureProbe.stringValue("string_toggle", user, "x")
+        def other = featureProbe.stringValue("string_toggle", new FPUser().stableRollout("key").with("city", "9"), "x")
+
+        then:
+        other == "1"
+        featureProbe.evaluationCacheStats().hitCount() == 0
+        featureProbe.evaluationCacheStats().missCount() == 2
+    }
+
+    def "A user modified after a miss does not change the cached entry"() {
+        when:
+        featureProbe.stringValue("string_toggle", user, "x")
+        user.with("city", "9")
+        def same = featureProbe.stringDetail("string_toggle", new FPUser().stableRollout("key").with("city", "1"), "x")
+
+        then:
+        same.ruleIndex.get() == 0
+        featureProbe.evaluationCacheStats().hitCount() == 1
+        featureProbe.evaluationCacheStats().missCount() == 1
+    }
+
+    def "Concurrent misses on the same entry evaluate the toggle once"() {
+        given:
+        def cache = new EvaluationCache(100, null)
+        def toggle = dataRepository.getToggle("string_toggle")
+        def evaluations = new AtomicInteger()
+        def start = new CountDownLatch(1)
+        def threads = (0..<8).collect {
+            Thread.start {
+                start.await()
+                cache.get(toggle, user, {
+                    evaluations.incrementAndGet()
+                    Thread.sleep(50)
+                    toggle.eval(user, dataRepository.getAllToggle(), dataRepository.getAllSegment(), null, 20)
+                })
+            }
+        }
+
+        when:
+        start.countDown()
+        threads*.join()
+
+        then:
+        evaluations.get() == 1
+        cache.stats().loadCount() == 1
+    }
+
+    def "A new repository version keeps the entries of unchanged toggles"() {
+        given:
+        featureProbe.stringValue("string_toggle", user, "x")
+        featureProbe.boolValue("bool_toggle", user, false)
+        def repository = loadRepository()
+        def changed = repository.toggles.get("string_toggle")
+        changed.rules = [new Rule(new Serve(1), changed.rules[0].conditions)]
+        changed.version = 2
+        dataRepository.refresh(repository)
+
+        expect:
+        featureProbe.stringValue("string_toggle", user, "x") == "2"
+        featureProbe.boolValue("bool_toggle", user, false)
+        featureProbe.evaluationCacheStats().hitCount() == 1
+    }
+
+    def "A changed segment invalidates the toggles that use it"() {
+        given:
+        dataRepository.refresh(loadRepositoryWithSegmentVersion(2, 2))
+        def fingerprint = dataRepository.getToggle("bool_toggle").dependencyFingerprint()
+        dataRepository.refresh(loadRepositoryWithSegmentVersion(3, 3))
+
+        expect:
+        dataRepository.getToggle("bool_toggle").dependencyFingerprint() != fingerprint
+        dataRepository.getToggle("disabled_toggle").cacheable()
+    }
+
+    def "Toggles with datetime conditions are not cached"() {
+        given:
+        def repository = loadRepository()
+        repository.toggles.get("string_toggle").rules[0].conditions.add(new Condition(type: ConditionType.DATETIME,
+                subject: "created", predicate: PredicateType.AFTER, objects: ["0"]))
+        dataRepository.refresh(repository)
+
+        when:
+        featureProbe.stringValue("string_toggle", user, "x")
+        featureProbe.stringValue("string_toggle", user, "x")
+
+        then:
+        !dataRepository.getToggle("string_toggle").cacheable()
+        featureProbe.evaluationCacheStats().requestCount() == 0
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.featureprobe.sdk.server
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.featureprobe.sdk.server.model.Repository
+import com.google.common.io.ByteStreams
+import spock.lang.Specification
+
+import java.nio.charset.Charset
+
+class JsonVariationSpec extends Specification {
+
+    def FeatureProbe featureProbe
+    def MemoryDataRepository dataRepository
+    def FPUser user
+
+    def setup() {
+        dataRepository = new MemoryDataRepository()
+        dataRepository.refresh(loadRepository())
+        featureProbe = new FeatureProbe(dataRepository)
+        featureProbe.eventProcessor = Mock(EventProcessor)
+        user = new FPUser().stableRollout("key").with("city", "1")
+    }
+
+    def loadRepository() {
+        def mapper = new ObjectMapper()
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        InputStream is = getClass().getClassLoader().getResourceAsStream("datasource/repo.json")
+        String data = new String(ByteStreams.toByteArray(is), Charset.forName("UTF-8"))
+        return mapper.readValue(data, Repository.class)
+    }
+
+    def "Copy mode returns a new object for every call"() {
+        when:
+        def first = featureProbe.jsonValue("json_toggle", user, null, Map.class)
+        first.put("changed", true)
+        def second = featureProbe.jsonValue("json_toggle", user, null, Map.class)
+
+        then:
+        second == [variation_0: "c2", v: "v1"]
+        !second.is(first)
+        !featureProbe.jsonValue("json_toggle", user, null, JsonNode.class).has("changed")
+    }
+
+    def "Variations bound to Object and Map are plain Java values"() {
+        expect:
+        featureProbe.jsonValue("json_toggle", user, null, Object.class) == [variation_0: "c2", v: "v1"]
+        featureProbe.jsonValue("json_toggle", user, null, Object.class) instanceof LinkedHashMap
+        featureProbe.jsonValue("json_toggle", user, null, Map.class) instanceof LinkedHashMap
+        featureProbe.jsonDetail("json_toggle", user, null, Object.class).value instanceof LinkedHashMap
+        featureProbe.jsonToggle("json_toggle", Object.class).value(user, null) instanceof LinkedHashMap
+        featureProbe.jsonValue("string_toggle", user, null, Object.class) == "1"
+        featureProbe.jsonValue("json_toggle", user, null, JsonNode.class) instanceof JsonNode
+    }
+
+    def "Shared mode returns one object per variation and class"() {
+        given:
+        featureProbe.config = FPConfig.builder().jsonVariationMode(JsonVariationMode.SHARED).build()
+
+        when:
+        def first = featureProbe.jsonValue("json_toggle", user, null, Map.class)
+        def second = featureProbe.jsonValue("json_toggle", user, null, Map.class)
+        def detail = featureProbe.jsonDetail("json_toggle", user, null, Map.class)
+
+        then:
+        first == [variation_0: "c2", v: "v1"]
+        second.is(first)
+        detail.value.is(first)
+        detail.reason == "Rule 0 hit"
+    }
+
+    def "Conversions are dropped with the toggle version"() {
+        given:
+        featureProbe.config = FPConfig.builder().jsonVariationMode(JsonVariationMode.SHARED).build()
+        def first = featureProbe.jsonValue("json_toggle", user, null, Map.class)
+        def repository = loadRepository()
+        repository.toggles.get("json_toggle").variations[0] = [v: "v2"]
+        dataRepository.refresh(repository)
+
+        expect:
+        featureProbe.jsonValue("json_toggle", user, null, Map.class) == [v: "v2"]
+        first == [variation_0: "c2", v: "v1"]
+    }
+
+    def "A variation that cannot be bound returns the default value"() {
+        expect:
+        featureProbe.jsonValue("json_toggle", user, "default", Integer.class) == "default"
+    }
+
+
+    def "Variations of another type return the default value without conversion exceptions"() {
+        when:
+        def value = featureProbe.jsonValue("string_toggle", user, [fallback: true], Map.class)
+        def detail = featureProbe.jsonDetail("string_toggle", user, [fallback: true], Map.class)
+        def stringValue = featureProbe.stringValue("bool_toggle", user, "fallback")
+        def stringDetail = featureProbe.stringDetail("bool_toggle", user, "fallback")
+
+        then:
+        value == [fallback: true]
+        detail.value == [fallback: true]
+        detail.reason == "Toggle data type mismatch"
+        (0..1).any { dataRepository.getToggle("string_toggle").getConvertedVariation(Map.class, it)
+                .is(FeatureProbe.UNCONVERTIBLE) }
+        stringValue == "fallback"
+        stringDetail.value == "fallback"
+        stringDetail.reason == "Toggle data type mismatch"
+        dataRepository.getToggle("bool_toggle").hasVariationsOf(Boolean.class)
+        !dataRepository.getToggle("bool_toggle").hasVariationsOf(String.class)
+        dataRepository.getToggle("number_toggle").hasVariationsOf(Double.class)
+    }
+
+}
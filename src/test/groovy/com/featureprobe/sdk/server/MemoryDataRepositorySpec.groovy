@@ -0,0 +1,247 @@
+package com.featureprobe.sdk.server
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.featureprobe.sdk.server.model.Condition
+import com.featureprobe.sdk.server.model.ConditionType
+import com.featureprobe.sdk.server.model.PredicateType
+import com.featureprobe.sdk.server.model.Repository
+import com.featureprobe.sdk.server.model.RepositoryProblem
+import com.featureprobe.sdk.server.model.Rule
+import com.featureprobe.sdk.server.model.Segment
+import com.featureprobe.sdk.server.model.SegmentRule
+import com.featureprobe.sdk.server.model.Serve
+import com.featureprobe.sdk.server.model.Toggle
+import com.google.common.io.ByteStreams
+import spock.lang.Specification
+
+import java.nio.charset.Charset
+
+class MemoryDataRepositorySpec extends Specification {
+
+    def test_data_local = "datasource/repo.json"
+    def ObjectMapper mapper
+    def MemoryDataRepository dataRepository
+
+    def setup() {
+        mapper = new ObjectMapper()
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        dataRepository = new MemoryDataRepository()
+    }
+
+    def loadRepository() {
+        InputStream is = getClass().getClassLoader().getResourceAsStream(test_data_local)
+        String data = new String(ByteStreams.toByteArray(is), Charset.forName("UTF-8"))
+        return mapper.readValue(data, Repository.class)
+    }
+
+    def "Refresh compiles toggles and segments"() {
+        when:
+        dataRepository.refresh(loadRepository())
+
+        then:
+        dataRepository.initialized()
+        dataRepository.getToggle("bool_toggle").compiledRules.length == 2
+        dataRepository.getToggle("bool_toggle").rules[0].conditions[0].matcher != null
+        dataRepository.getAllSegment().values().every { it.compiledRules != null }
+    }
+
+    def "Refresh ignores an older repository version"() {
+        given:
+        def repository = loadRepository()
+        repository.version = 2
+        dataRepository.refresh(repository)
+        def stale = loadRepository()
+        stale.version = 1
+
+        when:
+        dataRepository.refresh(stale)
+
+        then:
+        dataRepository.getToggle("bool_toggle").is(repository.toggles.get("bool_toggle"))
+    }
+
+    def "Compiled toggles evaluate like the model"() {
+        given:
+        dataRepository.refresh(loadRepository())
+        def featureProbe = new FeatureProbe(dataRepository)
+        def matched = new FPUser().stableRollout("key").with("city", "1").with("os", "mac")
+        def unmatched = new FPUser().stableRollout("key").with("city", "9").with("os", "mac")
+
+        expect:
+        featureProbe.stringValue("string_toggle", matched, "x") == "1"
+        featureProbe.numberValue("number_toggle", matched, 0) == 1
+        featureProbe.jsonValue("multi_condition_toggle", matched, [:], Map.class) == ["variation_0": ""]
+        featureProbe.jsonValue("multi_condition_toggle", unmatched, [:], Map.class) == ["disabled_key": "disabled_value"]
+        featureProbe.stringDetail("string_toggle", matched, "x").ruleIndex.get() == 0
+        featureProbe.stringDetail("string_toggle", unmatched, "x").reason.startsWith("Default rule hit.")
+        featureProbe.jsonDetail("disabled_toggle", matched, [:], Map.class).reason == "Toggle disabled."
+    }
+
+    def "Evaluations pinned to a snapshot ignore a later refresh"() {
+        given:
+        def repository = loadRepository()
+        repository.version = 1
+        dataRepository.refresh(repository)
+        def featureProbe = new FeatureProbe(dataRepository)
+        def user = new FPUser().stableRollout("key").with("city", "1").with("os", "mac")
+        def snapshot = featureProbe.snapshot()
+        def next = loadRepository()
+        next.version = 2
+        next.toggles.string_toggle.enabled = false
+        next.toggles.bool_toggle.enabled = false
+
+        when:
+        dataRepository.refresh(next)
+
+        then:
+        snapshot.version == 1
+        featureProbe.snapshot().version == 2
+        featureProbe.stringValue(snapshot, "string_toggle", user, "x") == "1"
+        featureProbe.stringDetail(snapshot, "string_toggle", user, "x").ruleIndex.get() == 0
+        featureProbe.boolValue(snapshot, "bool_toggle", user, false)
+        featureProbe.stringValue("string_toggle", user, "x") == "2"
+        !featureProbe.boolValue("bool_toggle", user, true)
+        RepositorySnapshot.UNINITIALIZED.getToggle("string_toggle") == null
+        featureProbe.stringDetail(RepositorySnapshot.UNINITIALIZED, "string_toggle", user, "x").reason ==
+                "FeatureProbe repository uninitialized"
+    }
+
+    def "The default snapshot is reused until the repository changes"() {
+        given:
+        def repository = loadRepository()
+        repository.version = 1
+        dataRepository.refresh(repository)
+        DataRepository custom = new DataRepository() {
+            void refresh(Repository r) { dataRepository.refresh(r) }
+
+            Toggle getToggle(String key) { dataRepository.getToggle(key) }
+
+            Map getAllToggle() { dataRepository.getAllToggle() }
+
+            Segment getSegment(String key) { dataRepository.getSegment(key) }
+
+            Map getAllSegment() { dataRepository.getAllSegment() }
+
+            Long getDebugUntilTime() { dataRepository.getDebugUntilTime() }
+
+            boolean initialized() { dataRepository.initialized() }
+
+            void close() {}
+        }
+        def first = custom.snapshot()
+        def next = loadRepository()
+        next.version = 2
+
+        expect:
+        custom.snapshot().is(first)
+
+        when:
+        custom.refresh(next)
+
+        then:
+        !custom.snapshot().is(first)
+        custom.snapshot().is(custom.snapshot())
+        custom.snapshot().getToggles().is(dataRepository.getAllToggle())
+    }
+
+    def "Refresh quarantines toggles with invalid data and reports the problems once"() {
+        given:
+        def repository = loadRepository()
+        repository.toggles.string_toggle.rules[0].conditions.add(new Condition(type: ConditionType.STRING,
+                subject: "city", predicate: PredicateType.MATCHES_REGEX, objects: ["[unclosed"]))
+        repository.toggles.number_toggle.defaultServe = new Serve(5)
+        repository.toggles.bool_toggle.rules[0].conditions.add(new Condition(type: ConditionType.SEGMENT,
+                predicate: PredicateType.IS_IN, objects: ["missing"]))
+        repository.segments.broken = new Segment(uniqueId: "broken", version: 1, rules: [new SegmentRule(
+                [new Condition(type: ConditionType.NUMBER, subject: "age", predicate: PredicateType.GREATER_THAN,
+                        objects: ["old"])])])
+        repository.toggles.json_toggle.rules[0].conditions.add(new Condition(type: ConditionType.SEGMENT,
+                predicate: PredicateType.IS_NOT_IN, objects: ["broken"]))
+        dataRepository.refresh(repository)
+        def featureProbe = new FeatureProbe(dataRepository)
+        def user = new FPUser().stableRollout("key").with("city", "1")
+
+        expect:
+        featureProbe.repositoryProblems().collect { [it.kind, it.toggleKey ?: it.segmentId] } as Set == [
+                [RepositoryProblem.Kind.INVALID_NUMBER, "broken"],
+                [RepositoryProblem.Kind.INVALID_REGEX, "string_toggle"],
+                [RepositoryProblem.Kind.INVALID_VARIATION_INDEX, "number_toggle"],
+                [RepositoryProblem.Kind.UNKNOWN_SEGMENT, "bool_toggle"],
+                [RepositoryProblem.Kind.INVALID_SEGMENT, "json_toggle"]] as Set
+        featureProbe.stringValue("string_toggle", user, "x") == "x"
+        featureProbe.stringDetail("string_toggle", user, "x").reason.startsWith(
+                "Toggle quarantined: INVALID_REGEX in toggle string_toggle")
+        featureProbe.numberValue("number_toggle", user, 7) == 7
+        !featureProbe.boolValue("bool_toggle", user, false)
+        featureProbe.jsonValue("json_toggle", user, [:], Map.class) == [:]
+        featureProbe.evaluateAll(user).string_toggle.value == null
+        featureProbe.jsonValue("multi_condition_toggle", user.with("os", "mac"), [:], Map.class) ==
+                ["variation_0": ""]
+        dataRepository.getToggle("disabled_toggle").quarantineReason() == null
+
+        when:
+        def quarantined = dataRepository.getToggle("string_toggle").eval(user, [:], [:], null, 20)
+        quarantined.setValue("y")
+
+        then:
+        thrown(UnsupportedOperationException)
+        dataRepository.getToggle("string_toggle").eval(user, [:], [:], null, 20).value == null
+    }
+
+    def "Disabled toggles are only validated on their disabled serve"() {
+        given:
+        def repository = loadRepository()
+        def disabled = repository.toggles.disabled_toggle
+        disabled.rules = [new Rule(new Serve(0), [new Condition(type: ConditionType.STRING, subject: "city",
+                predicate: PredicateType.MATCHES_REGEX, objects: ["[unclosed"])])]
+        disabled.defaultServe = new Serve(5)
+        dataRepository.refresh(repository)
+        def featureProbe = new FeatureProbe(dataRepository)
+
+        expect:
+        dataRepository.getToggle("disabled_toggle").quarantineReason() == null
+        featureProbe.repositoryProblems().every { it.toggleKey != "disabled_toggle" }
+        featureProbe.jsonValue("disabled_toggle", new FPUser().stableRollout("key"), [:], Map.class) ==
+                [disabled_key: "disabled_value"]
+
+        when:
+        repository = loadRepository()
+        repository.version = 2
+        repository.toggles.disabled_toggle.disabledServe = new Serve(5)
+        dataRepository.refresh(repository)
+
+        then:
+        dataRepository.getToggle("disabled_toggle").quarantineReason().startsWith(
+                "Toggle quarantined: INVALID_VARIATION_INDEX in toggle disabled_toggle")
+    }
+
+    def "Segments that reference an invalid segment are invalid whatever the order they are checked in"() {
+        given:
+        def repository = loadRepository()
+        def reference = { String id ->
+            new Segment(uniqueId: id, version: 1, rules: [new SegmentRule([new Condition(type: ConditionType.SEGMENT,
+                    predicate: PredicateType.IS_IN, objects: [id == "outer" ? "middle" : "broken"])])])
+        }
+        def segments = new LinkedHashMap(repository.segments)
+        segments.outer = reference("outer")
+        segments.middle = reference("middle")
+        segments.broken = new Segment(uniqueId: "broken", version: 1, rules: [new SegmentRule(
+                [new Condition(type: ConditionType.NUMBER, subject: "age", predicate: PredicateType.GREATER_THAN,
+                        objects: ["old"])])])
+        repository.segments = segments
+        repository.toggles.json_toggle.rules[0].conditions.add(new Condition(type: ConditionType.SEGMENT,
+                predicate: PredicateType.IS_IN, objects: ["outer"]))
+        dataRepository.refresh(repository)
+
+        expect:
+        dataRepository.getProblems().collect { [it.kind, it.toggleKey ?: it.segmentId] } as Set == [
+                [RepositoryProblem.Kind.INVALID_NUMBER, "broken"],
+                [RepositoryProblem.Kind.INVALID_SEGMENT, "middle"],
+                [RepositoryProblem.Kind.INVALID_SEGMENT, "outer"],
+                [RepositoryProblem.Kind.INVALID_SEGMENT, "json_toggle"]] as Set
+        dataRepository.getToggle("json_toggle").quarantineReason().startsWith(
+                "Toggle quarantined: INVALID_SEGMENT in toggle json_toggle")
+    }
+
+}
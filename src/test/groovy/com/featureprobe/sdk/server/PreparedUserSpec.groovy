@@ -0,0 +1,175 @@
+package com.featureprobe.sdk.server
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.featureprobe.sdk.server.model.CompileContext
+import com.featureprobe.sdk.server.model.Condition
+import com.featureprobe.sdk.server.model.ConditionType
+import com.featureprobe.sdk.server.model.PredicateType
+import com.featureprobe.sdk.server.model.Repository
+import com.google.common.io.ByteStreams
+import spock.lang.Specification
+
+import java.nio.charset.Charset
+
+class PreparedUserSpec extends Specification {
+
+    def loadRepository() {
+        def mapper = new ObjectMapper()
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        InputStream is = getClass().getClassLoader().getResourceAsStream("datasource/repo.json")
+        return mapper.readValue(new String(ByteStreams.toByteArray(is), Charset.forName("UTF-8")), Repository.class)
+    }
+
+    def "A prepared user evaluates like the user it was prepared from"() {
+        given:
+        def repository = loadRepository()
+        def dataRepository = new MemoryDataRepository()
+        dataRepository.refresh(repository)
+        def toggles = dataRepository.getAllToggle()
+        def segments = dataRepository.getAllSegment()
+        def random = new Random(11)
+
+        expect:
+        (0..<100).every {
+            def user = new FPUser().stableRollout("user-" + random.nextInt())
+            (0..<30).each { user.with("attr" + it, "value" + it) }
+            user.with("city", String.valueOf(random.nextInt(6)))
+            if (random.nextBoolean()) {
+                user.with("os", random.nextBoolean() ? "mac" : "linux")
+            }
+            def prepared = user.prepare()
+            toggles.values().every { toggle ->
+                toggle.evalVariation(user, toggles, segments, 20) == toggle.evalVariation(prepared, toggles, segments, 20)
+            }
+        }
+    }
+
+    def "Attributes are read by slot, including present attributes without a value"() {
+        given:
+        def context = CompileContext.DEFAULT.forVersion()
+        def condition = new Condition(type: ConditionType.STRING, subject: "city",
+                predicate: PredicateType.IS_NOT_ANY_OF, objects: ["1"])
+        condition.compile(context)
+        def slots = context.attributeSlots
+        def prepared = new FPUser().stableRollout("key").with("city", null).prepare()
+        def slot = slots.slotOf("city")
+
+        expect:
+        prepared.containAttr(slots, slot, "city")
+        prepared.getAttr(slots, slot, "city") == null
+        !prepared.containAttr(slots, slots.slotOf("country"), "country")
+        condition.matchObjects(prepared, [:])
+    }
+
+    def "A prepared user binds to the slots of every version it is evaluated against"() {
+        given:
+        def first = new AttributeSlots()
+        def second = new AttributeSlots()
+        second.slotOf("os")
+        def prepared = new FPUser().with("city", "1").with("os", "mac").prepare()
+
+        expect:
+        prepared.getAttr(first, first.slotOf("city"), "city") == "1"
+        prepared.getAttr(second, second.slotOf("city"), "city") == "1"
+        prepared.getAttr(second, second.slotOf("os"), "os") == "mac"
+        prepared.getAttr(first, first.slotOf("os"), "os") == "mac"
+        prepared.getAttr(null, 0, "os") == "mac"
+        prepared.prepare().is(prepared)
+    }
+
+    def "Slots are assigned per repository version"() {
+        given:
+        def repository = loadRepository()
+        def dataRepository = new MemoryDataRepository()
+        dataRepository.refresh(repository)
+        def user = new FPUser().stableRollout("key").with("city", "1").with("os", "mac")
+        def prepared = user.prepare()
+        def before = dataRepository.getAllToggle().collectEntries { [it.key, it.value.eval(prepared,
+                dataRepository.getAllToggle(), dataRepository.getAllSegment(), null, 20).value] }
+        def next = loadRepository()
+        next.version = 2
+        next.toggles.string_toggle.rules[0].conditions[0].subject = "os"
+        next.toggles.string_toggle.rules[0].conditions[0].objects = ["mac"]
+        dataRepository.refresh(next)
+
+        expect:
+        before.string_toggle == "1"
+        dataRepository.getToggle("string_toggle").eval(prepared, dataRepository.getAllToggle(),
+                dataRepository.getAllSegment(), null, 20).ruleIndex ==
+                dataRepository.getToggle("string_toggle").eval(user, dataRepository.getAllToggle(),
+                        dataRepository.getAllSegment(), null, 20).ruleIndex
+        dataRepository.getAllToggle().every { key, toggle ->
+            toggle.evalVariation(prepared, dataRepository.getAllToggle(), dataRepository.getAllSegment(), 20) ==
+                    toggle.evalVariation(user, dataRepository.getAllToggle(), dataRepository.getAllSegment(), 20)
+        }
+    }
+
+    def "A prepared user cannot be modified"() {
+        given:
+        def user = new FPUser().with("city", "1")
+        def prepared = user.prepare()
+
+        when:
+        prepared.with("city", "2")
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        user.with("city", "2")
+
+        then:
+        prepared.getAttr("city") == "1"
+    }
+
+    def "Typed conditions parse an attribute once and match like plain users"() {
+        given:
+        def user = new FPUser().with("prepared_price", "12.5").with("prepared_version", "1.2.3")
+                .with("prepared_time", "1000").with("prepared_bad", "x").with("prepared_blank", " ")
+        def prepared = user.prepare()
+        def conditions = [
+                new Condition(type: ConditionType.NUMBER, subject: "prepared_price",
+                        predicate: PredicateType.GREATER_THAN, objects: ["10"]),
+                new Condition(type: ConditionType.SEMVER, subject: "prepared_version",
+                        predicate: PredicateType.LESS_THAN, objects: ["1.10.0"]),
+                new Condition(type: ConditionType.DATETIME, subject: "prepared_time",
+                        predicate: PredicateType.BEFORE, objects: ["2000"]),
+                new Condition(type: ConditionType.NUMBER, subject: "prepared_bad",
+                        predicate: PredicateType.EQUAL_TO, objects: ["1"]),
+                new Condition(type: ConditionType.NUMBER, subject: "prepared_blank",
+                        predicate: PredicateType.NOT_EQUAL_TO, objects: ["1"])]
+        def context = CompileContext.DEFAULT.forVersion()
+        conditions.each { it.compile(context) }
+        def slots = context.attributeSlots
+        def priceSlot = slots.slotOf("prepared_price")
+        def prepared2 = user.prepare()
+
+        expect:
+        conditions.collect { it.matchObjects(prepared2, [:]) } == [true, true, true, false, false]
+        conditions.collect { it.matchObjects(user, [:]) } == [true, true, true, false, false]
+        prepared2.getNumberAttr(slots, priceSlot, "prepared_price")
+                .is(prepared2.getNumberAttr(slots, priceSlot, "prepared_price"))
+        prepared.getNumberAttr(slots, priceSlot, "prepared_price") == 12.5d
+    }
+
+    def "An attribute that is not a number reads as unparseable every time without throwing"() {
+        given:
+        def slots = new AttributeSlots()
+        def slot = slots.slotOf("prepared_invalid")
+        def blankSlot = slots.slotOf("prepared_blank")
+        def prepared = new FPUser().with("prepared_invalid", "x").with("prepared_blank", " ").prepare()
+
+        expect:
+        (1..2).every {
+            prepared.getNumberAttr(slots, slot, "prepared_invalid") == null &&
+                    prepared.isUnparseableNumberAttr(slots, slot, "prepared_invalid") &&
+                    prepared.getDatetimeAttr(slots, slot, "prepared_invalid") == null &&
+                    prepared.isUnparseableDatetimeAttr(slots, slot, "prepared_invalid")
+        }
+        prepared.getNumberAttr(slots, blankSlot, "prepared_blank") == null
+        !prepared.isUnparseableNumberAttr(slots, blankSlot, "prepared_blank")
+        !prepared.isUnparseableDatetimeAttr(slots, blankSlot, "prepared_blank")
+    }
+
+}
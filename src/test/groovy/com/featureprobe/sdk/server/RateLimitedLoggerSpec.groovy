@@ -0,0 +1,128 @@
+package com.featureprobe.sdk.server
+
+import org.slf4j.Logger
+import org.slf4j.event.Level
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class RateLimitedLoggerSpec extends Specification {
+
+    def logger = Mock(Logger) {
+        isErrorEnabled() >> true
+    }
+
+    def "Repeats within the interval are counted instead of logged"() {
+        given:
+        def limited = new RateLimitedLogger(logger, Level.ERROR, "failed {}", 1, TimeUnit.HOURS)
+        def logged = []
+
+        when:
+        (0..<1000).each { limited.log("toggle") }
+
+        then:
+        1 * logger.error("failed {}", _) >> { String format, Object[] arguments -> logged.add(arguments.toList()) }
+        logged == [["toggle"]]
+        limited.suppressed() == 999
+    }
+
+    def "Each first argument is limited apart"() {
+        given:
+        def limited = new RateLimitedLogger(logger, Level.ERROR, "failed {}", 1, TimeUnit.HOURS)
+        def logged = []
+        logger.error(_, _) >> { String format, Object[] arguments -> logged.add(arguments.toList()) }
+
+        when:
+        ["a", "b", "a", "b", "c", "a"].each { limited.log(it) }
+
+        then:
+        logged == [["a"], ["b"], ["c"]]
+        limited.suppressed() == 3
+    }
+
+    def "The next message reports the suppressed count before its exception"() {
+        given:
+        def limited = new RateLimitedLogger(logger, Level.ERROR, "failed {}", 50, TimeUnit.MILLISECONDS)
+        def exception = new IllegalStateException()
+        def logged = []
+        logger.error(_, _) >> { String format, Object[] arguments -> logged.add([format] + arguments.toList()) }
+
+        when:
+        limited.log("toggle", exception)
+        limited.log("toggle", exception)
+        limited.log("toggle", exception)
+        Thread.sleep(100)
+        limited.log("toggle", exception)
+
+        then:
+        logged == [["failed {}", "toggle", exception],
+                   ["failed {} ({} similar messages suppressed)", "toggle", 2L, exception]]
+        limited.suppressed() == 0
+    }
+
+    def "Flush reports the pending counts without waiting for the next message"() {
+        given:
+        def limited = new RateLimitedLogger(logger, Level.ERROR, "failed {}, objects: {}", 1, TimeUnit.HOURS)
+        def logged = []
+        logger.error(_, _) >> { String format, Object[] arguments -> logged.add([format] + arguments.toList()) }
+
+        when:
+        limited.log("a", 1)
+        limited.log("a", 2)
+        limited.log("a", 3)
+        limited.log("b", new IllegalStateException())
+        limited.flush()
+        limited.flush()
+
+        then:
+        logged.size() == 3
+        logged[2] == ["failed {}, objects: {} ({} similar messages suppressed)", "a", 3, 2L]
+        limited.suppressed() == 0
+    }
+
+    def "Flush forgets the first arguments whose interval is over"() {
+        given:
+        def limited = new RateLimitedLogger(logger, Level.ERROR, "failed {}", 10, TimeUnit.MILLISECONDS)
+        def logged = []
+        logger.error(_, _) >> { String format, Object[] arguments -> logged.add([format] + arguments.toList()) }
+
+        when:
+        limited.log("a")
+        limited.log("a")
+        Thread.sleep(50)
+        limited.flush()
+
+        then:
+        logged == [["failed {}", "a"], ["failed {} ({} similar messages suppressed)", "a", 1L]]
+        limited.@limits.isEmpty()
+        limited.suppressed() == 0
+    }
+
+    def "First arguments beyond the bound share one limit"() {
+        given:
+        def limited = new RateLimitedLogger(logger, Level.ERROR, "failed {}", 1, TimeUnit.HOURS)
+        def logged = 0
+        logger.error(_, _) >> { logged++ }
+
+        when:
+        (0..<RateLimitedLogger.MAX_KEYS + 10).each { limited.log(it) }
+
+        then:
+        logged == RateLimitedLogger.MAX_KEYS + 1
+        limited.suppressed() == 9
+    }
+
+    def "Nothing is counted when the level is disabled"() {
+        given:
+        def limited = new RateLimitedLogger(logger, Level.WARN, "busy", 1, TimeUnit.HOURS)
+
+        when:
+        limited.log()
+        limited.log()
+
+        then:
+        0 * logger.warn(*_)
+        limited.suppressed() == 0
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.featureprobe.sdk.server
 
+import com.featureprobe.sdk.server.model.CompileContext
 import com.featureprobe.sdk.server.model.Split
+import com.featureprobe.sdk.server.model.Toggle
 import spock.lang.Specification
 
 class SplitSpec extends Specification {
@@ -34,6 +36,107 @@ class SplitSpec extends Specification {
         hash == 9558
     }
 
+    def "Hash matches the golden vectors of SHA-1 over the concatenated key and salt"() {
+        expect:
+        split.hash(hashKey, salt, 10000) == bucket
+        split.hash(hashKey, salt, 100) == bucket % 100
+
+        where:
+        hashKey                  | salt                     | bucket
+        "13"                     | "tutorial_rollout"       | 9558
+        ""                       | ""                       | 377
+        "user-1"                 | "toggle"                 | 2020
+        "test_user_key"          | "test_toggle_key"        | 4447
+        "test@gmail.com"         | "abcddeafasde"           | 8467
+        "\u7528\u6237"           | "\u5f00\u5173"           | 364
+        "emoji\uD83D\uDE00"      | "salt"                   | 5043
+        "a\uD83D"                | "\uDE00b"                | 8078
+        "x" * 300                | "long"                   | 2332
+        "1234567890"             | "\u00e9t\u00e9"           | 7659
+    }
+
+    def "Bucket table selects the first group listing a bucket"() {
+        when:
+        split = new Split(distribution)
+        split.compile(CompileContext.DEFAULT)
+
+        then:
+        buckets.collect { split.getGroup(it) } == groups
+
+        where:
+        distribution                                  | buckets                             | groups
+        [[[0, 5000]], [[5000, 10000]]]                | [0, 4999, 5000, 9999]               | [0, 0, 1, 1]
+        [[[0, 100], [9000, 10000]], [[100, 9000]]]    | [0, 99, 100, 8999, 9000, 9999]      | [0, 0, 1, 1, 0, 0]
+        [[], [[0, 10000]], []]                        | [0, 9999]                           | [1, 1]
+        [[[0, 3000]], [[2000, 10000]]]                | [1999, 2000, 2999, 3000]            | [0, 0, 0, 1]
+        [[[0, 3000]], [[6000, 10000]]]                | [2999, 3000, 5999, 6000]            | [0, -1, -1, 1]
+        [[[-10, 50]], [[50, 20000]]]                  | [0, 49, 50, 9999]                   | [0, 0, 1, 1]
+    }
+
+    def "A user in an unassigned bucket misses the split"() {
+        given:
+        split = new Split([[[0, 3000]], [[6000, 10000]]])
+        split.compile(CompileContext.DEFAULT)
+        def gap = (0..<100).collect { new FPUser().stableRollout("user-" + it) }
+                .find { split.hash(it.key, "toggle", 10000) in 3000..<6000 }
+
+        when:
+        def result = split.findIndex(gap, "toggle")
+
+        then:
+        !result.hit
+        !result.index.isPresent()
+        result.reason.get() == "Warning: User with key '" + gap.key + "' is in no percentage group"
+        split.findGroup(gap, "toggle") == Toggle.NO_VARIATION
+    }
+
+    def "Bucket table matches a scan of the distribution"() {
+        given:
+        def random = new Random(7)
+
+        expect:
+        100.times {
+            def distribution = (0..<random.nextInt(5) + 1).collect {
+                (0..<random.nextInt(3)).collect {
+                    def from = random.nextInt(10000)
+                    [from, from + random.nextInt(4000)]
+                }
+            }
+            split = new Split(distribution)
+            10000.times { bucket ->
+                def expected = distribution.findIndexOf { ranges -> ranges.any { bucket >= it[0] && bucket < it[1] } }
+                assert split.getGroup(bucket) == expected
+            }
+        }
+    }
+
+    def "Bucket table is rebuilt when the distribution changes"() {
+        when:
+        split.compile(CompileContext.DEFAULT)
+        def before = split.getGroup(7000)
+        split.setDistribution([[[0, 10000]], []])
+
+        then:
+        before == 1
+        split.getGroup(7000) == 0
+    }
+
+    def "A null bucketBy attribute value is hashed as the string null"() {
+        given:
+        split.setBucketBy("email")
+        split.compile(CompileContext.DEFAULT)
+        user.with("email", null)
+
+        when:
+        def result = split.findIndex(user, "test_toggle_key")
+
+        then:
+        result.hit
+        result.index.get() == (split.hash("null", "test_toggle_key", 10000) < 5000 ? 0 : 1)
+        split.findGroup(user, "test_toggle_key") == result.index.get()
+        split.findGroup(user.prepare(), "test_toggle_key") == result.index.get()
+    }
+
     def "User not has key"() {
         when:
         user = new FPUser()
@@ -0,0 +1,80 @@
+package com.featureprobe.sdk.server
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.featureprobe.sdk.server.model.Repository
+import com.google.common.io.ByteStreams
+import spock.lang.Specification
+
+import java.nio.charset.Charset
+
+class ToggleHandleSpec extends Specification {
+
+    def FeatureProbe featureProbe
+    def MemoryDataRepository dataRepository
+    def FPUser user
+
+    def setup() {
+        dataRepository = new MemoryDataRepository()
+        dataRepository.refresh(loadRepository(1))
+        featureProbe = new FeatureProbe(dataRepository)
+        user = new FPUser().stableRollout("key").with("city", "1").with("os", "mac")
+    }
+
+    def loadRepository(long version) {
+        def mapper = new ObjectMapper()
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        InputStream is = getClass().getClassLoader().getResourceAsStream("datasource/repo.json")
+        String data = new String(ByteStreams.toByteArray(is), Charset.forName("UTF-8"))
+        def repository = mapper.readValue(data, Repository.class)
+        repository.version = version
+        return repository
+    }
+
+    def "Handles evaluate like calls by key"() {
+        expect:
+        featureProbe.boolToggle("bool_toggle").value(user, false) == featureProbe.boolValue("bool_toggle", user, false)
+        featureProbe.stringToggle("string_toggle").value(user, "x") == "1"
+        featureProbe.stringToggle("string_toggle").detail(user, "x").ruleIndex.get() == 0
+        featureProbe.numberToggle("number_toggle").value(user, 0) == featureProbe.numberValue("number_toggle", user, 0)
+        featureProbe.jsonToggle("multi_condition_toggle", Map.class).value(user, [:]) == ["variation_0": ""]
+        featureProbe.jsonToggle("disabled_toggle", Map.class).detail(user, [:]).reason == "Toggle disabled."
+    }
+
+    def "Handles follow repository refreshes"() {
+        given:
+        def handle = featureProbe.stringToggle("string_toggle")
+        def missing = featureProbe.boolToggle("new_toggle")
+        def next = loadRepository(2)
+        next.toggles.string_toggle.enabled = false
+        next.toggles.new_toggle = next.toggles.bool_toggle
+        next.toggles.new_toggle.key = "new_toggle"
+
+        expect:
+        handle.value(user, "x") == "1"
+        !missing.value(user, false)
+        missing.detail(user, false).reason == "Toggle not exist"
+
+        when:
+        dataRepository.refresh(next)
+
+        then:
+        handle.value(user, "x") == "2"
+        missing.value(user, false)
+    }
+
+    def "Handles check the variation type when they are created"() {
+        when:
+        create.call(featureProbe)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        create << [{ it.boolToggle("string_toggle") },
+                   { it.stringToggle("number_toggle") },
+                   { it.numberToggle("bool_toggle") },
+                   { it.jsonToggle("json_toggle", Integer.class) }]
+    }
+
+}
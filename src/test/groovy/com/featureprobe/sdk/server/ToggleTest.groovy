@@ -1,6 +1,18 @@
 package com.featureprobe.sdk.server
 
+import com.featureprobe.sdk.server.model.CompileContext
+import com.featureprobe.sdk.server.model.Condition
+import com.featureprobe.sdk.server.model.EvaluationContext
+import com.featureprobe.sdk.server.model.ConditionType
+import com.featureprobe.sdk.server.model.PredicateType
+import com.featureprobe.sdk.server.model.Prerequisite
+import com.featureprobe.sdk.server.model.PrerequisiteGraph
+import com.featureprobe.sdk.server.model.Repository
+import com.featureprobe.sdk.server.model.Rule
+import com.featureprobe.sdk.server.model.Segment
+import com.featureprobe.sdk.server.model.SegmentRule
 import com.featureprobe.sdk.server.model.Serve
+import com.featureprobe.sdk.server.model.Split
 import com.featureprobe.sdk.server.model.Toggle
 import spock.lang.Specification
 
@@ -50,7 +62,7 @@ class ToggleTest extends Specification {
         toggleSpy.disabledServe = new Serve(DISABLED_VARIATION)
 
         // Make meetPrerequisite return false
-        toggleSpy.meetPrerequisite(user, null, null, 1) >> false
+        toggleSpy.meetPrerequisite(user, _, 1) >> false
 
         when:
         def result = toggleSpy.doEval(user, null, null, null, 1)
@@ -71,7 +83,7 @@ class ToggleTest extends Specification {
         toggleSpy.disabledServe = new Serve(DISABLED_VARIATION)
 
         // Make meetPrerequisite return false
-        toggleSpy.meetPrerequisite(user, null, null, 1) >> true
+        toggleSpy.meetPrerequisite(user, _, 1) >> true
 
         when:
         def result = toggleSpy.doEval(user, null, null, null, 1)
@@ -80,4 +92,398 @@ class ToggleTest extends Specification {
         DISABLED_VARIATION != result.variationIndex.get()
     }
 
+    def "A segment is evaluated once per evaluation across rules and prerequisites"() {
+        given:
+        SegmentRule segmentRule = Spy(constructorArgs: [[condition(ConditionType.STRING, "city",
+                PredicateType.IS_ONE_OF, ["paris"])]])
+        def segment = new Segment(uniqueId: "s", version: 1, rules: [segmentRule])
+        def inSegment = condition(ConditionType.SEGMENT, null, PredicateType.IS_IN, ["s"])
+
+        def prerequisiteToggle = new Toggle(key: "pre", enabled: true, variations: [true, false],
+                disabledServe: new Serve(1), defaultServe: new Serve(1),
+                rules: [new Rule(new Serve(0), [inSegment])])
+        toggle.setKey("main")
+        toggle.setPrerequisites([new Prerequisite(key: "pre", value: true)])
+        toggle.setRules([
+                new Rule(new Serve(0), [inSegment, condition(ConditionType.STRING, "city", PredicateType.IS_ONE_OF,
+                        ["london"])]),
+                new Rule(new Serve(0), [inSegment])])
+        user.with("city", "paris")
+
+        when:
+        def result = toggle.eval(user, [main: toggle, pre: prerequisiteToggle], [s: segment], null, 2)
+
+        then:
+        1 * segmentRule.hit(_, _)
+        result.ruleIndex.get() == 1
+        result.variationIndex.get() == 0
+    }
+
+    def "Rules and segments hit with a map of segments like with a context"() {
+        given:
+        def segmentRule = new SegmentRule([condition(ConditionType.STRING, "city", PredicateType.IS_ONE_OF,
+                ["paris"])])
+        def segment = new Segment(uniqueId: "s", version: 1, rules: [segmentRule])
+        def rule = new Rule(new Serve(0), [condition(ConditionType.SEGMENT, null, PredicateType.IS_IN, ["s"])])
+        def segments = [s: segment]
+        user.stableRollout("key").with("city", city)
+
+        expect:
+        segmentRule.hit(user, segments).isHit() == expected
+        segment.contains(user, segments) == expected
+        rule.hit(user, segments, "main").isHit() == expected
+        rule.hit(user, new EvaluationContext([:], segments), "main").isHit() == expected
+
+        where:
+        city    | expected
+        "paris" | true
+        "rome"  | false
+    }
+
+    def "A prerequisite cycle is rejected when the repository is compiled"() {
+        given:
+        def a = prerequisiteToggle("a", "b")
+        def b = prerequisiteToggle("b", "a")
+        def c = prerequisiteToggle("c", "a")
+        def toggles = [a: a, b: b, c: c]
+        new Repository(toggles, [:], null, 1).compile(CompileContext.DEFAULT)
+
+        expect:
+        ["a", "b", "c"].every {
+            def result = toggles[it].eval(user, toggles, [:], false, 20)
+            result.reason == "prerequisite depth overflow" && result.variationIndex.get() == 1
+        }
+    }
+
+    def "A shared prerequisite is evaluated once per evaluation"() {
+        given:
+        Toggle base = Spy(constructorArgs: [])
+        base.key = "base"
+        base.enabled = true
+        base.variations = [true, false]
+        base.disabledServe = new Serve(1)
+        base.defaultServe = new Serve(0)
+        def toggles = [top: prerequisiteToggle("top", "left", "right"), left: prerequisiteToggle("left", "base"),
+                       right: prerequisiteToggle("right", "base"), base: base]
+        new Repository(toggles, [:], null, 1).compile(CompileContext.DEFAULT)
+
+        when:
+        def result = toggles.top.eval(user, toggles, [:], false, 3)
+
+        then:
+        1 * base.doEval(_, _, _, _)
+        result.value == true
+        result.reason.startsWith("Default rule hit.")
+    }
+
+    def "A prerequisite chain deeper than the evaluation depth overflows before evaluation"() {
+        given:
+        def toggles = (0..<30).collectEntries { i ->
+            [("t" + i): i == 29 ? prerequisiteToggle("t" + i) : prerequisiteToggle("t" + i, "t" + (i + 1))]
+        }
+        new Repository(toggles, [:], null, 1).compile(CompileContext.DEFAULT)
+
+        expect:
+        toggles.t0.eval(user, toggles, [:], false, 30).value == true
+        toggles.t0.eval(user, toggles, [:], false, 29).reason == "prerequisite depth overflow"
+        toggles.t1.eval(user, toggles, [:], false, 29).value == true
+    }
+
+    def "A prerequisite chain longer than the thread stack allows is resolved"() {
+        given:
+        def length = 100000
+        def toggles = (0..<length).collectEntries { i ->
+            [("t" + i): i == length - 1 ? prerequisiteToggle("t" + i) : prerequisiteToggle("t" + i, "t" + (i + 1))]
+        }
+        PrerequisiteGraph.resolve(toggles)
+
+        expect:
+        toggles.t0.@requiredDepth == length
+        toggles["t" + (length - 2)].@requiredDepth == 2
+        toggles.t0.eval(user, toggles, [:], false, 20).reason == "prerequisite depth overflow"
+    }
+
+    def "A missing prerequisite fails every toggle that reaches it, without failing the others"() {
+        given:
+        def toggles = [top: prerequisiteToggle("top", "middle"), middle: prerequisiteToggle("middle", "missing"),
+                       healthy: prerequisiteToggle("healthy")]
+        new Repository(toggles, [:], null, 1).compile(CompileContext.DEFAULT)
+        def context = new EvaluationContext(toggles, [:])
+
+        expect:
+        ["top", "middle", "top", "healthy"].collect { toggles[it].eval(user, context, null, 20).reason } ==
+                ["prerequisite not exist: middle", "prerequisite not exist: middle",
+                 "prerequisite not exist: middle", "Default rule hit. "]
+        toggles.top.eval(user, toggles, [:], false, 20).value == false
+        Toggle.variationIndex(toggles.top.evalVariation(user, toggles, [:], 20)) == 1
+        Toggle.variationIndex(toggles.healthy.evalVariation(user, toggles, [:], 20)) == 0
+    }
+
+    def "Reasons are formatted when read"() {
+        given:
+        toggle.setKey("reasons")
+        toggle.setRules([
+                new Rule(new Serve(1), [condition(ConditionType.STRING, "city", PredicateType.IS_ONE_OF, ["1"])]),
+                new Rule(new Serve(0), [condition(ConditionType.STRING, "country", PredicateType.IS_ONE_OF, ["cn"])])])
+        def user = new FPUser().stableRollout("user-key").with("city", city)
+
+        expect:
+        toggle.eval(user, [:], [:], null, 20).reason == reason
+
+        where:
+        city | reason
+        "1"  | "Rule 0 hit"
+        "2"  | "Default rule hit. Warning: User with key 'user-key' does not have attribute name 'country'"
+    }
+
+    def "Split reasons are formatted when read"() {
+        given:
+        def split = new Split([[[0, 10000]]])
+        split.setBucketBy("email")
+
+        expect:
+        split.findIndex(new FPUser().stableRollout("k").with("email", "e"), "t").reason.get() ==
+                "selected 0 percentage group"
+        split.findIndex(new FPUser().stableRollout("k"), "t").reason.get() ==
+                "Warning: User with key 'k' does not have attribute name 'email'"
+    }
+
+    def "Indexed rules select the first rule that hits"() {
+        given:
+        def rules = (0..<40).collect { i ->
+            def conditions = [condition(ConditionType.STRING, "tenant", PredicateType.IS_ONE_OF,
+                    ["t" + (i % 15), "t" + ((i * 7) % 15)])]
+            if (i % 3 == 0) {
+                conditions.add(condition(ConditionType.STRING, "plan", PredicateType.IS_ONE_OF, ["pro"]))
+            }
+            i % 10 == 5 ? new Rule(new Serve(i % 2), [condition(ConditionType.STRING, "plan",
+                    PredicateType.IS_ONE_OF, ["free"])]) : new Rule(new Serve(i % 2), conditions)
+        }
+        rules.add(new Rule(new Serve(1), [condition(ConditionType.STRING, "country", PredicateType.IS_ONE_OF, ["cn"])]))
+        toggle.setKey("tenants")
+        toggle.setRules(rules)
+        toggle.compile(CompileContext.DEFAULT)
+        def context = new EvaluationContext([:], [:])
+        def random = new Random(5)
+
+        expect:
+        (0..<500).every {
+            def user = new FPUser().stableRollout("user-" + it)
+            if (random.nextInt(5) > 0) {
+                user.with("tenant", "t" + random.nextInt(18))
+            }
+            user.with("plan", random.nextBoolean() ? "pro" : "free")
+            def expected = rules.findIndexOf { it.hit(user, context, "tenants").isHit() }
+            def result = toggle.eval(user, [:], [:], null, 20)
+            result.ruleIndex.orElse(-1) == expected &&
+                    Toggle.ruleIndex(toggle.evalVariation(user, [:], [:], 20)) == expected &&
+                    (expected >= 0 || result.reason ==
+                            "Default rule hit. Warning: User with key 'user-" + it + "' does not have attribute name 'country'")
+        }
+    }
+
+    def "Threshold indexed rules select the first rule that hits"() {
+        given:
+        def predicates = [PredicateType.EQUAL_TO, PredicateType.NOT_EQUAL_TO, PredicateType.GREATER_THAN,
+                          PredicateType.GREATER_OR_EQUAL, PredicateType.LESS_THAN, PredicateType.LESS_OR_EQUAL]
+        def random = new Random(7)
+        def rules = (0..<30).collect { i ->
+            def conditions = [condition(type, "value", type == ConditionType.DATETIME
+                    ? [PredicateType.AFTER, PredicateType.BEFORE][random.nextInt(2)] : predicates[random.nextInt(6)],
+                    (0..random.nextInt(2)).collect { values[random.nextInt(values.size())] })]
+            if (i % 4 == 0) {
+                conditions.add(condition(type, "value", PredicateType.LESS_THAN, [values[-1]]))
+            }
+            i % 9 == 4 ? new Rule(new Serve(i % 2), [condition(ConditionType.STRING, "plan",
+                    PredicateType.IS_ONE_OF, ["free"])]) : new Rule(new Serve(i % 2), conditions)
+        }
+        toggle.setKey("thresholds")
+        toggle.setRules(rules)
+        toggle.compile(CompileContext.DEFAULT)
+        def context = new EvaluationContext([:], [:])
+        def inputs = values + extra + ["", "x"]
+
+        expect:
+        toggle.@ruleIndex.class.simpleName == "ThresholdRuleIndex"
+        (0..<500).every {
+            def user = new FPUser().stableRollout("user-" + it)
+                    .with("plan", random.nextBoolean() ? "pro" : "free")
+            def value = inputs[random.nextInt(inputs.size())]
+            if (value != null) {
+                user.with("value", value)
+            }
+            def expected = rules.findIndexOf { it.hit(user, context, "thresholds").isHit() }
+            toggle.eval(user, [:], [:], null, 20).ruleIndex.orElse(-1) == expected &&
+                    Toggle.ruleIndex(toggle.evalVariation(user.prepare(), [:], [:], 20)) == expected
+        }
+
+        where:
+        type                   | values                                           | extra
+        ConditionType.NUMBER   | ["-2", "0", "1.5", "3", "10", "1e3"]             | ["-0", "-0.0", "2", "11", "NaN", null]
+        ConditionType.SEMVER   | ["1.0.0", "1.2", "1.10.0", "2.0.0-beta", "2.0"] | ["1", "1.1", "2.0.0", "3.0", null]
+        ConditionType.DATETIME | ["1600000000", "1700000000", "1800000000"]      | ["1650000000", "1900000000", null]
+    }
+
+    def "Threshold indexed rules agree with a full scan on equal thresholds and boundary values"() {
+        given:
+        def predicates = [PredicateType.EQUAL_TO, PredicateType.NOT_EQUAL_TO, PredicateType.GREATER_THAN,
+                          PredicateType.GREATER_OR_EQUAL, PredicateType.LESS_THAN, PredicateType.LESS_OR_EQUAL]
+        def random = new Random(seed)
+        def thresholds = spellings.flatten()
+        def rules = (0..<random.nextInt(32) + 8).collect { i ->
+            new Rule(new Serve(i % 2), (0..random.nextInt(2)).collect {
+                condition(type, "value", predicates[random.nextInt(predicates.size())],
+                        (0..random.nextInt(3)).collect { thresholds[random.nextInt(thresholds.size())] })
+            })
+        }
+        toggle.setKey("equal_thresholds")
+        toggle.setRules(rules)
+        toggle.compile(CompileContext.DEFAULT)
+        def context = new EvaluationContext([:], [:])
+        def inputs = thresholds + boundaries + [null]
+
+        expect:
+        toggle.@ruleIndex.class.simpleName == "ThresholdRuleIndex"
+        inputs.every { value ->
+            def user = new FPUser().stableRollout("user-" + value)
+            if (value != null) {
+                user.with("value", value)
+            }
+            def expected = rules.findIndexOf { it.hit(user, context, "equal_thresholds").isHit() }
+            toggle.eval(user, [:], [:], null, 20).ruleIndex.orElse(-1) == expected &&
+                    Toggle.ruleIndex(toggle.evalVariation(user.prepare(), [:], [:], 20)) == expected
+        }
+
+        where:
+        [type, spellings, boundaries, seed] << [
+                [[ConditionType.NUMBER, [["1", "1.0", "1e0", "+1"], ["0", "-0", "0.0"], ["2.5", "25e-1"],
+                                         ["-3", "-3.00"]],
+                  ["0.99999999", "1.0000001", String.valueOf(Math.nextUp(1d)), String.valueOf(Math.nextDown(1d)),
+                   String.valueOf(Double.MIN_VALUE), "-" + Double.MIN_VALUE, "2.4999999", "2.5000001", "-4", "9"]],
+                 [ConditionType.SEMVER, [["1", "1.0", "1.0.0"], ["1.2", "1.2.0"], ["2.0.0-beta", "2-beta"],
+                                         ["1.10"]],
+                  ["0.9", "1.0.0.1", "1.0-beta", "1.1", "1.2.1", "1.9", "1.10.0", "1.10.0.0", "2", "2.0.0-rc"]]
+                ],
+                (1..20)
+        ].combinations().collect { it[0] + [it[1]] }
+    }
+
+    def "A large threshold ladder selects the first rule that hits"() {
+        given:
+        def rules = (0..<200).collect { i ->
+            def conditions = [condition(ConditionType.SEMVER, "version", PredicateType.GREATER_OR_EQUAL,
+                    ["1." + (200 - i)])]
+            if (plan) {
+                conditions.add(condition(ConditionType.STRING, "plan", PredicateType.STARTS_WITH, ["pro"]))
+            }
+            new Rule(new Serve(i % 2), conditions)
+        }
+        toggle.setKey("ladder")
+        toggle.setRules(rules)
+        toggle.compile(CompileContext.DEFAULT)
+        def context = new EvaluationContext([:], [:])
+        def random = new Random(11)
+
+        expect:
+        toggle.@ruleIndex?.class?.simpleName == index
+        plan || toggle.@ruleIndex.@candidates.every { it.length == 1 }
+        (0..<500).every {
+            def user = new FPUser().stableRollout("user-" + it)
+                    .with("version", "1." + random.nextInt(220))
+                    .with("plan", random.nextBoolean() ? "pro" : "free")
+            def expected = rules.findIndexOf { it.hit(user, context, "ladder").isHit() }
+            toggle.eval(user, [:], [:], null, 20).ruleIndex.orElse(-1) == expected &&
+                    Toggle.ruleIndex(toggle.evalVariation(user.prepare(), [:], [:], 20)) == expected
+        }
+
+        where:
+        plan  | index
+        false | "ThresholdRuleIndex"
+        true  | null
+    }
+
+    def "Users in a split gap miss the rule in the value APIs"() {
+        given:
+        def split = new Split([[[0, 3000]], [[6000, 10000]]])
+        def gapped = { String key, List variations ->
+            new Toggle(key: key, enabled: true, version: 1, variations: variations, disabledServe: new Serve(0),
+                    defaultServe: new Serve(1), rules: [new Rule(new Serve(split), [])])
+        }
+        def dataRepository = new MemoryDataRepository()
+        dataRepository.refresh(new Repository([bool_gap: gapped("bool_gap", [true, false]),
+                                               number_gap: gapped("number_gap", [1, 2])], [:], null, 1))
+        def featureProbe = new FeatureProbe(dataRepository)
+        def events = []
+        featureProbe.eventProcessor = Mock(EventProcessor) {
+            push(_) >> { Event event -> events.add(event) }
+        }
+        def users = (0..<200).collect { new FPUser().stableRollout("user-" + it) }
+        def toggles = dataRepository.getAllToggle()
+
+        expect:
+        users.any {
+            toggles.bool_gap.eval(it, toggles, [:], false, 20).reason ==
+                    "Default rule hit. Warning: User with key '" + it.key + "' is in no percentage group"
+        }
+        users.every {
+            featureProbe.boolValue("bool_gap", it, true) == toggles.bool_gap.eval(it, toggles, [:], true, 20).value &&
+                    featureProbe.numberValue("number_gap", it, 0) ==
+                    toggles.number_gap.eval(it, toggles, [:], 0d, 20).value
+        }
+        events.size() == 400
+        events.every { it.ruleIndex == 0 || (it.ruleIndex == null && it.variationIndex == 1) }
+    }
+
+    def "Results of static toggles are built once"() {
+        given:
+        toggle.setKey("static")
+        toggle.setVersion(3L)
+        toggle.setRules([])
+        toggle.compile(CompileContext.DEFAULT)
+        def result = toggle.eval(user, [:], [:], 0, 20)
+
+        expect:
+        toggle.eval(user, [:], [:], null, 20).is(result)
+        result.value == 1 && result.version == 3L && result.reason == "Default rule hit. "
+        toggle.eval(user, [:], [:], 0.5d, 20).value == 1.0d
+
+        when:
+        toggle.setEnabled(false)
+        result = toggle.eval(user, [:], [:], null, 20)
+
+        then:
+        toggle.eval(user, [:], [:], null, 20).is(result)
+        result.value == 0 && result.reason == "Toggle disabled."
+
+        when:
+        result.setValue(1)
+
+        then:
+        thrown(UnsupportedOperationException)
+        toggle.eval(user, [:], [:], null, 20).value == 0
+
+        when:
+        toggle.setEnabled(true)
+        toggle.setPrerequisites([new Prerequisite(key: "static", value: 1)])
+        new Repository([static: toggle], [:], null, 1).compile(CompileContext.DEFAULT)
+
+        def cycle = toggle.eval(user, [static: toggle], [:], null, 20)
+        toggle.setEnabled(false)
+
+        then:
+        cycle.reason == "prerequisite depth overflow"
+        toggle.eval(user, [static: toggle], [:], null, 20).reason == "Toggle disabled."
+    }
+
+    private static Toggle prerequisiteToggle(String key, String... prerequisites) {
+        new Toggle(key: key, enabled: true, variations: [true, false], disabledServe: new Serve(1),
+                defaultServe: new Serve(0), rules: [],
+                prerequisites: prerequisites.collect { new Prerequisite(key: it, value: true) })
+    }
+
+    private static Condition condition(ConditionType type, String subject, PredicateType predicate,
+                                       List<String> objects) {
+        new Condition(type: type, subject: subject, predicate: predicate, objects: objects)
+    }
+
 }
@@ -0,0 +1,132 @@
+package com.featureprobe.sdk.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Users evaluated per second when one toggle is evaluated for a large batch of users, with a loop over
+ * {@link FeatureProbe#stringValue(String, FPUser, String)} as the baseline. Events go to a no-op processor so
+ * that only evaluation is measured.
+ * <p>
+ * Run with {@code mvn test-compile} and then
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.featureprobe.sdk.server.BatchEvaluationBenchmark},
+ * or start {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BatchEvaluationBenchmark.USERS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchEvaluationBenchmark {
+
+    static final int USERS = 100000;
+
+    private static final String TOGGLE_KEY = "string_toggle";
+
+    private FeatureProbe featureProbe;
+
+    private List<FPUser> users;
+
+    @Setup
+    public void setup() {
+        FPConfig config = FPConfig.builder()
+                .localFileMode()
+                .startWait(0L, TimeUnit.MILLISECONDS)
+                .build();
+        featureProbe = new FeatureProbe("benchmark", config);
+        featureProbe.eventProcessor.shutdown();
+        featureProbe.eventProcessor = new EventProcessor() {
+            @Override
+            public void push(Event event) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new FPUser().stableRollout("user-" + i).with("city", String.valueOf(i % 5)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        featureProbe.close();
+    }
+
+    @Benchmark
+    public long loopStringValue() {
+        long hits = 0;
+        for (FPUser user : users) {
+            if ("1".equals(featureProbe.stringValue(TOGGLE_KEY, user, "x"))) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public long loopBoolValue() {
+        long hits = 0;
+        for (FPUser user : users) {
+            if (featureProbe.boolValue("bool_toggle", user, false)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public long batchSequential() {
+        return featureProbe.evaluateBatch(TOGGLE_KEY, users.stream(), false)
+                .sequential()
+                .filter(result -> "1".equals(result.getValue().getValue()))
+                .count();
+    }
+
+    @Benchmark
+    public long batchParallel() {
+        return featureProbe.evaluateBatch(TOGGLE_KEY, users, false)
+                .filter(result -> "1".equals(result.getValue().getValue()))
+                .count();
+    }
+
+    @Benchmark
+    public long batchParallelTracked() {
+        return featureProbe.evaluateBatch(TOGGLE_KEY, users, true)
+                .map(result -> result.getValue().getValue())
+                .filter(Objects::nonNull)
+                .count();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BatchEvaluationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.featureprobe.sdk.server;
+
+import com.featureprobe.sdk.server.model.CompileContext;
+import com.featureprobe.sdk.server.model.Condition;
+import com.featureprobe.sdk.server.model.ConditionType;
+import com.featureprobe.sdk.server.model.PredicateType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of matching one condition as its object list grows.
+ * <p>
+ * Run with {@code mvn test-compile} and then
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.featureprobe.sdk.server.ConditionBenchmark},
+ * or start {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private Condition isOneOf;
+
+    private Condition isNotAnyOf;
+
+    private FPUser hitUser;
+
+    private FPUser missUser;
+
+    @Setup
+    public void setup() {
+        List<String> userIds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            userIds.add("user-" + i);
+        }
+        Collections.shuffle(userIds);
+        isOneOf = condition(PredicateType.IS_ONE_OF, userIds);
+        isNotAnyOf = condition(PredicateType.IS_NOT_ANY_OF, userIds);
+        hitUser = new FPUser().stableRollout("hit").with("userId", "user-" + size / 2);
+        missUser = new FPUser().stableRollout("miss").with("userId", "user-unknown");
+    }
+
+    private static Condition condition(PredicateType predicate, List<String> objects) {
+        Condition condition = new Condition();
+        condition.setType(ConditionType.STRING);
+        condition.setSubject("userId");
+        condition.setPredicate(predicate);
+        condition.setObjects(objects);
+        condition.compile(CompileContext.DEFAULT);
+        return condition;
+    }
+
+    @Benchmark
+    public boolean isOneOfHit() {
+        return isOneOf.matchObjects(hitUser, Collections.emptyMap());
+    }
+
+    @Benchmark
+    public boolean isOneOfMiss() {
+        return isOneOf.matchObjects(missUser, Collections.emptyMap());
+    }
+
+    @Benchmark
+    public boolean isNotAnyOfMiss() {
+        return isNotAnyOf.matchObjects(missUser, Collections.emptyMap());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConditionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
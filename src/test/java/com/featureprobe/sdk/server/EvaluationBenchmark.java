@@ -0,0 +1,197 @@
+package com.featureprobe.sdk.server;
+
+import com.featureprobe.sdk.server.model.CompileContext;
+import com.featureprobe.sdk.server.model.Condition;
+import com.featureprobe.sdk.server.model.ConditionType;
+import com.featureprobe.sdk.server.model.PredicateType;
+import com.featureprobe.sdk.server.model.Repository;
+import com.featureprobe.sdk.server.model.Rule;
+import com.featureprobe.sdk.server.model.Segment;
+import com.featureprobe.sdk.server.model.Serve;
+import com.featureprobe.sdk.server.model.Split;
+import com.featureprobe.sdk.server.model.Toggle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocation of evaluating one toggle whose first rule needs an attribute the user does not have, whose
+ * second rule matches on the city, and whose default serve is a percentage split, both with results and by
+ * variation index only, and for a user with 30 attributes before and after {@link FPUser#prepare()}; and of a
+ * toggle with 200 per-tenant rules for a user hitting the 191st, and of one with a ladder of 200 minimum app versions
+ * for a user hitting the 191st.
+ * <p>
+ * Run with {@code mvn test-compile} and then
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.featureprobe.sdk.server.EvaluationBenchmark
+ * -prof gc}; {@code gc.alloc.rate.norm} is the number of bytes allocated per evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    private static final String TOGGLE_KEY = "rollout";
+
+    private Toggle toggle;
+
+    private Map<String, Toggle> toggles;
+
+    private Map<String, Segment> segments;
+
+    private FPUser ruleUser;
+
+    private FPUser defaultUser;
+
+    private Toggle tenantToggle;
+
+    private FPUser tenantUser;
+
+    private Toggle versionToggle;
+
+    private FPUser versionUser;
+
+    private FPUser wideUser;
+
+    private FPUser preparedWideUser;
+
+    @Setup
+    public void setup() {
+        toggle = new Toggle();
+        toggle.setKey(TOGGLE_KEY);
+        toggle.setEnabled(true);
+        toggle.setVersion(1L);
+        toggle.setVariations(Arrays.asList(true, false, true));
+        toggle.setDisabledServe(new Serve(1));
+        toggle.setDefaultServe(new Serve(new Split(Arrays.asList(
+                Collections.singletonList(Arrays.asList(0, 3333)),
+                Collections.singletonList(Arrays.asList(3333, 6666)),
+                Collections.singletonList(Arrays.asList(6666, 10000))))));
+        toggle.setRules(Arrays.asList(
+                new Rule(new Serve(0), Collections.singletonList(
+                        condition(ConditionType.STRING, "country", PredicateType.IS_ONE_OF, "cn"))),
+                new Rule(new Serve(1), Collections.singletonList(
+                        condition(ConditionType.STRING, "city", PredicateType.IS_ONE_OF, "1")))));
+        tenantToggle = new Toggle();
+        tenantToggle.setKey("tenants");
+        tenantToggle.setEnabled(true);
+        tenantToggle.setVersion(1L);
+        tenantToggle.setVariations(Arrays.asList(true, false));
+        tenantToggle.setDisabledServe(new Serve(1));
+        tenantToggle.setDefaultServe(new Serve(1));
+        List<Rule> tenantRules = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tenantRules.add(new Rule(new Serve(0), Collections.singletonList(
+                    condition(ConditionType.STRING, "tenant", PredicateType.IS_ONE_OF, "tenant-" + i))));
+        }
+        tenantToggle.setRules(tenantRules);
+        versionToggle = new Toggle();
+        versionToggle.setKey("versions");
+        versionToggle.setEnabled(true);
+        versionToggle.setVersion(1L);
+        versionToggle.setVariations(Arrays.asList(true, false));
+        versionToggle.setDisabledServe(new Serve(1));
+        versionToggle.setDefaultServe(new Serve(1));
+        List<Rule> versionRules = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            versionRules.add(new Rule(new Serve(i % 2), Collections.singletonList(condition(ConditionType.SEMVER,
+                    "app_version", PredicateType.GREATER_OR_EQUAL, "2." + (200 - i) + ".0"))));
+        }
+        versionToggle.setRules(versionRules);
+        toggles = new HashMap<>();
+        toggles.put(TOGGLE_KEY, toggle);
+        toggles.put("tenants", tenantToggle);
+        toggles.put("versions", versionToggle);
+        segments = new HashMap<>();
+        new Repository(toggles, segments, null, 1L).compile(CompileContext.DEFAULT);
+        ruleUser = new FPUser().stableRollout("user-1").with("city", "1");
+        defaultUser = new FPUser().stableRollout("user-2").with("city", "9");
+        tenantUser = new FPUser().stableRollout("user-4").with("tenant", "tenant-190");
+        versionUser = new FPUser().stableRollout("user-5").with("app_version", "2.10.3");
+        wideUser = new FPUser().stableRollout("user-3").with("city", "9");
+        for (int i = 0; i < 30; i++) {
+            wideUser.with("attribute-" + i, String.valueOf(i));
+        }
+        preparedWideUser = wideUser.prepare();
+    }
+
+    private static Condition condition(ConditionType type, String subject, PredicateType predicate, String object) {
+        Condition condition = new Condition();
+        condition.setType(type);
+        condition.setSubject(subject);
+        condition.setPredicate(predicate);
+        condition.setObjects(Collections.singletonList(object));
+        return condition;
+    }
+
+    @Benchmark
+    public Object ruleHit() {
+        return toggle.eval(ruleUser, toggles, segments, false, 20).getValue();
+    }
+
+    @Benchmark
+    public Object defaultSplit() {
+        return toggle.eval(defaultUser, toggles, segments, false, 20).getValue();
+    }
+
+    @Benchmark
+    public Object defaultSplitDetail() {
+        return toggle.eval(defaultUser, toggles, segments, false, 20).getReason();
+    }
+
+    @Benchmark
+    public int ruleHitVariation() {
+        return Toggle.variationIndex(toggle.evalVariation(ruleUser, toggles, segments, 20));
+    }
+
+    @Benchmark
+    public int defaultSplitVariation() {
+        return Toggle.variationIndex(toggle.evalVariation(defaultUser, toggles, segments, 20));
+    }
+
+    @Benchmark
+    public int wideUserVariation() {
+        return Toggle.variationIndex(toggle.evalVariation(wideUser, toggles, segments, 20));
+    }
+
+    @Benchmark
+    public int preparedUserVariation() {
+        return Toggle.variationIndex(toggle.evalVariation(preparedWideUser, toggles, segments, 20));
+    }
+
+    @Benchmark
+    public int tenantRuleVariation() {
+        return Toggle.variationIndex(tenantToggle.evalVariation(tenantUser, toggles, segments, 20));
+    }
+
+    @Benchmark
+    public int versionRuleVariation() {
+        return Toggle.variationIndex(versionToggle.evalVariation(versionUser, toggles, segments, 20));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EvaluationBenchmark.class.getSimpleName())
+                .addProfiler("gc").build()).run();
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.featureprobe.sdk.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@link FeatureProbe#jsonValue(String, FPUser, Object, Class)} for a JSON variation of about 7 KB in
+ * both {@link JsonVariationMode}s, with the serialize and parse round trip it replaces as the baseline.
+ * <p>
+ * Run with {@code mvn test-compile} and then
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.featureprobe.sdk.server.JsonValueBenchmark},
+ * or start {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonValueBenchmark {
+
+    private static final String TOGGLE_KEY = "json_toggle";
+
+    @Param({"COPY", "SHARED"})
+    public JsonVariationMode mode;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private FeatureProbe featureProbe;
+
+    private JsonToggle<Map> handle;
+
+    private FPUser user;
+
+    private Map<String, Object> variation;
+
+    @Setup
+    public void setup() {
+        FPConfig config = FPConfig.builder()
+                .localFileMode()
+                .startWait(0L, TimeUnit.MILLISECONDS)
+                .jsonVariationMode(mode)
+                .build();
+        featureProbe = new FeatureProbe("benchmark", config);
+        featureProbe.eventProcessor.shutdown();
+        featureProbe.eventProcessor = new EventProcessor() {
+            @Override
+            public void push(Event event) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        variation = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            variation.put("setting_" + i, Arrays.asList("value-" + i, i, i % 2 == 0));
+        }
+        List<Object> variations = new ArrayList<>();
+        variations.add(variation);
+        variations.add(variation);
+        variations.add(variation);
+        featureProbe.dataRepository.getToggle(TOGGLE_KEY).setVariations(variations);
+        handle = featureProbe.jsonToggle(TOGGLE_KEY, Map.class);
+        user = new FPUser().stableRollout("user").with("city", "1");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        featureProbe.close();
+    }
+
+    @Benchmark
+    public Object jsonValue() {
+        return featureProbe.jsonValue(TOGGLE_KEY, user, null, Map.class);
+    }
+
+    @Benchmark
+    public Object jsonHandle() {
+        return handle.value(user, null);
+    }
+
+    @Benchmark
+    public Object roundTrip() throws JsonProcessingException {
+        return mapper.readValue(mapper.writeValueAsString(variation), Map.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonValueBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}